@@ -2,6 +2,7 @@ package guardians.webapp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * This class is the entry point of the application
@@ -9,6 +10,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @author miggoncan
  */
 @SpringBootApplication
+@EnableScheduling
 public class GuardiansWebappApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(GuardiansWebappApplication.class, args);
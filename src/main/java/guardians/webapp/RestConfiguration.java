@@ -4,14 +4,23 @@ import java.net.URI;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.ssl.SSLContexts;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
@@ -22,8 +31,17 @@ import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.client.Traverson;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
+import guardians.webapp.services.CachingHalMessageConverter;
+import guardians.webapp.services.ConditionalGetCache;
+import guardians.webapp.services.ConditionalGetInterceptor;
+import guardians.webapp.services.RootLinkRegistry;
+import guardians.webapp.services.RootResourceInterceptor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
 
 @Configuration
@@ -39,41 +57,133 @@ public class RestConfiguration {
 	private Resource trustStore;
 	@Value("${ssl.trust-store.password}")
 	private String trustStorePassword;
-	
+
+	@Value("${guardians.rest.pool.max-total}")
+	private Integer poolMaxTotal;
+	@Value("${guardians.rest.pool.max-per-route}")
+	private Integer poolMaxPerRoute;
+	@Value("${guardians.rest.pool.connect-timeout}")
+	private Integer connectTimeout;
+	@Value("${guardians.rest.pool.read-timeout}")
+	private Integer readTimeout;
+	@Value("${guardians.rest.pool.acquire-timeout}")
+	private Integer acquireTimeout;
+	@Value("${guardians.rest.pool.idle-eviction}")
+	private Long idleEviction;
+
+	/**
+	 * The pool of connections shared by all the requests to the REST service
+	 */
 	@Bean
-	public RestTemplateBuilder restTemplateBuilder() {
-		return new RestTemplateBuilder(restTemplate -> {
-			// Configure SSL to accept self-signed certificates
-			SSLContext sslContext = null;
-			try {
-				sslContext = SSLContexts.custom()
-						.loadTrustMaterial(null, new TrustSelfSignedStrategy()).build();
-			} catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException e) {
-				log.error("Unexpected exception while creating SSLContext: " + e);
+	public PoolingHttpClientConnectionManager restConnectionManager() {
+		// Configure SSL to accept self-signed certificates
+		SSLContext sslContext = null;
+		try {
+			sslContext = SSLContexts.custom()
+					.loadTrustMaterial(null, new TrustSelfSignedStrategy()).build();
+		} catch (KeyManagementException | NoSuchAlgorithmException | KeyStoreException e) {
+			log.error("Unexpected exception while creating SSLContext: " + e);
+			sslContext = SSLContexts.createDefault();
+		}
+		Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE))
+				.build();
+		PoolingHttpClientConnectionManager connectionManager =
+				new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+		connectionManager.setMaxTotal(poolMaxTotal);
+		connectionManager.setDefaultMaxPerRoute(poolMaxPerRoute);
+		return connectionManager;
+	}
+
+	@Bean
+	public CloseableHttpClient restHttpClient(PoolingHttpClientConnectionManager restConnectionManager) {
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(readTimeout)
+				.setConnectionRequestTimeout(acquireTimeout)
+				.build();
+		return HttpClients.custom()
+				.setConnectionManager(restConnectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.evictExpiredConnections()
+				.evictIdleConnections(idleEviction, TimeUnit.MILLISECONDS)
+				.build();
+	}
+
+	/**
+	 * Statistics of the pool of connections to the REST service. They are
+	 * available through the metrics endpoint of the actuator
+	 */
+	@Bean
+	public MeterBinder restConnectionPoolMetrics(PoolingHttpClientConnectionManager restConnectionManager) {
+		return registry -> {
+			Gauge.builder("guardians.rest.pool.leased", restConnectionManager,
+					connectionManager -> connectionManager.getTotalStats().getLeased())
+				.description("Connections to the REST service currently in use")
+				.register(registry);
+			Gauge.builder("guardians.rest.pool.pending", restConnectionManager,
+					connectionManager -> connectionManager.getTotalStats().getPending())
+				.description("Requests waiting for a connection to the REST service")
+				.register(registry);
+			Gauge.builder("guardians.rest.pool.available", restConnectionManager,
+					connectionManager -> connectionManager.getTotalStats().getAvailable())
+				.description("Idle connections to the REST service that can be reused")
+				.register(registry);
+			Gauge.builder("guardians.rest.pool.max", restConnectionManager,
+					connectionManager -> connectionManager.getTotalStats().getMax())
+				.description("Maximum number of connections to the REST service")
+				.register(registry);
+		};
+	}
+
+	@Bean
+	public RestTemplateBuilder restTemplateBuilder(CloseableHttpClient restHttpClient,
+			ConditionalGetCache conditionalGetCache) {
+		// The request factory and the message converters are shared by all the
+		// RestTemplates, so they are only created once
+		HttpComponentsClientHttpRequestFactory requestFactory =
+				new HttpComponentsClientHttpRequestFactory(restHttpClient);
+		// The bodies of the responses that have not been modified are not parsed again
+		List<HttpMessageConverter<?>> messageConverters = new ArrayList<>();
+		for (HttpMessageConverter<?> converter : Traverson.getDefaultMessageConverters(MediaTypes.HAL_JSON)) {
+			if (converter instanceof AbstractJackson2HttpMessageConverter) {
+				converter = new CachingHalMessageConverter((AbstractJackson2HttpMessageConverter) converter,
+						conditionalGetCache);
 			}
-			SSLConnectionSocketFactory socketFactory = 
-					new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
-			CloseableHttpClient httpClient = HttpClients.custom()
-		        .setSSLSocketFactory(socketFactory)
-		        .build();
-		    HttpComponentsClientHttpRequestFactory requestFactory = 
-		    		new HttpComponentsClientHttpRequestFactory();
-		    requestFactory.setHttpClient(httpClient);
+			messageConverters.add(converter);
+		}
+		ConditionalGetInterceptor conditionalGetInterceptor = new ConditionalGetInterceptor(conditionalGetCache);
+		return new RestTemplateBuilder(restTemplate -> {
 		    restTemplate.setRequestFactory(requestFactory);
 		    // Configure basic authentication
 		    restTemplate.getInterceptors().add(
 		    		new BasicAuthenticationInterceptor(username, password));
+		    // Revalidate the responses already received instead of downloading them again
+		    restTemplate.getInterceptors().add(conditionalGetInterceptor);
 		    // Configure the restTemplate to use the default HAL message converter
-		    restTemplate.setMessageConverters(
-		    		Traverson.getDefaultMessageConverters(MediaTypes.HAL_JSON));
+		    restTemplate.setMessageConverters(messageConverters);
 		});
 	}
-	
+
+	/**
+	 * The RestTemplate used by the services to communicate with the REST service
+	 */
+	@Bean
+	public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder) {
+		return restTemplateBuilder.build();
+	}
+
 	@Bean
-	public Traverson traverson() {
-		Traverson traverson = new Traverson(URI.create(restUri), MediaTypes.HAL_JSON);
+	public Traverson traverson(RestTemplateBuilder restTemplateBuilder, RootLinkRegistry rootLinkRegistry) {
+		URI rootUri = URI.create(restUri);
+		Traverson traverson = new Traverson(rootUri, MediaTypes.HAL_JSON);
 		// Configure the RestTemplates used by the Traverson
-		RestTemplate restTemplate = restTemplateBuilder().build();
+		RestTemplate restTemplate = restTemplateBuilder.build();
+		// The root resource is requested every time a link is followed. Use the
+		// one already known instead. It is the first interceptor, so these requests
+		// do not go through the rest of them
+		restTemplate.getInterceptors().add(0, new RootResourceInterceptor(rootUri, rootLinkRegistry));
 		traverson.setRestOperations(restTemplate);
 		return traverson;
 	}
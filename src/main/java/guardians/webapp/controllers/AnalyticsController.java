@@ -0,0 +1,86 @@
+package guardians.webapp.controllers;
+
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+
+import guardians.webapp.model.DoctorWorkload;
+import guardians.webapp.model.Schedule;
+import guardians.webapp.services.WorkloadService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class is responsible for handling requests to compare the workload of
+ * the doctors in the {@link Schedule}s of several months
+ * 
+ * @author miggoncan
+ */
+@Controller
+@RequestMapping("/analytics")
+@Slf4j
+public class AnalyticsController {
+	@Autowired
+	private WorkloadService workloadService;
+
+	@Value("${guardians.analytics.max-months}")
+	private Integer maxMonths;
+
+	private static final String FROM_ATTR = "from";
+	private static final String TO_ATTR = "to";
+	private static final String WORKLOADS_ATTR = "workloads";
+
+	/**
+	 * This method handles requests to compare the shifts, cycle shifts and
+	 * consultations of each doctor in a range of months with the limits of their
+	 * shift configurations
+	 * 
+	 * @param from  The first month, included. If null, the month a year before
+	 *              the last month is used
+	 * @param to    The last month, included. If null, the current month is used
+	 * @param model The model object that will be used to pass attributes to
+	 *              thymeleaf
+	 * @return The path to the thymeleaf template used to represent the workloads
+	 */
+	@GetMapping("")
+	public String getWorkloads(@RequestParam(required = false) YearMonth from,
+			@RequestParam(required = false) YearMonth to, Model model) {
+		if (to == null) {
+			to = YearMonth.now();
+		}
+		if (from == null) {
+			from = to.minusMonths(11);
+		}
+		model.addAttribute(FROM_ATTR, from);
+		model.addAttribute(TO_ATTR, to);
+		model.addAttribute(WORKLOADS_ATTR, this.getWorkloadsAsJson(from, to));
+		return "analytics/analytics";
+	}
+
+	/**
+	 * @see #getWorkloads(YearMonth, YearMonth, Model)
+	 */
+	@GetMapping("/workloads")
+	@ResponseBody
+	public List<DoctorWorkload> getWorkloadsAsJson(@RequestParam YearMonth from, @RequestParam YearMonth to) {
+		log.info("Request to get the workloads from " + from + " to " + to);
+		if (from.isAfter(to)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The range starts after it ends");
+		}
+		if (ChronoUnit.MONTHS.between(from, to) + 1 > maxMonths) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"At most " + maxMonths + " months can be analyzed at once");
+		}
+		return workloadService.getWorkloads(from, to);
+	}
+}
@@ -1,14 +1,16 @@
 package guardians.webapp.controllers;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,14 +28,20 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.server.ResponseStatusException;
 
 import guardians.webapp.controllers.assemblers.DoctorAssembler;
 import guardians.webapp.model.AllowedShift;
 import guardians.webapp.model.Doctor;
+import guardians.webapp.model.DoctorShift;
 import guardians.webapp.model.ShiftConfiguration;
-import guardians.webapp.services.AllowedShiftService;
+import guardians.webapp.services.AllowedShiftCatalog;
+import guardians.webapp.services.AsyncDoctorService;
 import guardians.webapp.services.DoctorService;
+import guardians.webapp.services.DoctorShiftService;
+import guardians.webapp.services.UpstreamExecutor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -52,7 +60,11 @@ public class DoctorsController {
 	@Autowired
 	private DoctorService doctorService;
 	@Autowired
-	private AllowedShiftService allowedShiftService;
+	private AsyncDoctorService asyncDoctorService;
+	@Autowired
+	private AllowedShiftCatalog allowedShiftCatalog;
+	@Autowired
+	private DoctorShiftService doctorShiftService;
 
 	// Default values that will be used on new shift configurations
 	@Value("${guardians.default.minShifts}")
@@ -66,11 +78,17 @@ public class DoctorsController {
 	@Value("${guardians.default.hasShiftOnlyWhenCycleShifts}")
 	private Boolean defaultHasShiftsOnlyWhenCycleShifts;
 
+	@Value("${guardians.doctor-shifts.max-months}")
+	private Integer shiftsMaxMonths;
+
 	// Names of the thymeleaf model attributes
 	private static final String DOCTORS_ATTR = "doctors";
 	private static final String DOCTOR_ATTR = "doctor";
 	private static final String SHIFT_CONF_ATTR = "shiftConfig";
 	private static final String ALLOWED_SHIFTS_ATTR = "allowedShifts";
+	private static final String SHIFTS_ATTR = "shifts";
+	private static final String FROM_ATTR = "from";
+	private static final String TO_ATTR = "to";
 
 	/**
 	 * This method handles requests to get the list of all available doctors in the
@@ -107,9 +125,13 @@ public class DoctorsController {
 	@GetMapping("/{doctorId}")
 	public String getDoctor(@PathVariable Long doctorId, Model model) {
 		log.info("Request received get doctor " + doctorId);
-		EntityModel<Doctor> doctorEntity = doctorService.getDoctor(doctorId);
+		// Both requests are independent, so they are sent at the same time
+		CompletableFuture<EntityModel<Doctor>> doctorFuture = asyncDoctorService.getDoctor(doctorId);
+		CompletableFuture<EntityModel<ShiftConfiguration>> shiftConfigFuture = 
+				asyncDoctorService.getShiftConfiguration(doctorId);
+		EntityModel<Doctor> doctorEntity = UpstreamExecutor.join(doctorFuture);
 		model.addAttribute(DOCTOR_ATTR, doctorAssembler.toDoctor(doctorEntity));
-		EntityModel<ShiftConfiguration> shiftConfigEntity = doctorService.getShiftConfiguration(doctorId);
+		EntityModel<ShiftConfiguration> shiftConfigEntity = UpstreamExecutor.join(shiftConfigFuture);
 		ShiftConfiguration shiftConfig = null;
 		if (shiftConfigEntity == null) {
 			log.info("The doctor does not have an associated shift configuration");
@@ -120,6 +142,54 @@ public class DoctorsController {
 		return "doctors/doctor";
 	}
 
+	/**
+	 * This method will handle requests to get the cycle shifts, shifts and
+	 * consultations of a {@link Doctor} in a range of months
+	 * 
+	 * @param doctorId The id of the {@link Doctor}
+	 * @param from     The first month, included. If null, the previous month is
+	 *                 used
+	 * @param to       The last month, included. If null, the next month is used
+	 * @param model    The model object that will be used to pass attributes to
+	 *                 thymeleaf
+	 * @return The path to the thymeleaf template used to represent the shifts of
+	 *         a doctor
+	 */
+	@GetMapping(value = "/{doctorId}/shifts", produces = MediaType.TEXT_HTML_VALUE)
+	public String getDoctorShifts(@PathVariable Long doctorId, @RequestParam(required = false) YearMonth from,
+			@RequestParam(required = false) YearMonth to, Model model) {
+		if (from == null) {
+			from = YearMonth.now().minusMonths(1);
+		}
+		if (to == null) {
+			to = YearMonth.now().plusMonths(1);
+		}
+		CompletableFuture<EntityModel<Doctor>> doctorFuture = asyncDoctorService.getDoctor(doctorId);
+		model.addAttribute(SHIFTS_ATTR, this.getDoctorShiftsAsJson(doctorId, from, to));
+		model.addAttribute(DOCTOR_ATTR, doctorAssembler.toDoctor(UpstreamExecutor.join(doctorFuture)));
+		model.addAttribute(FROM_ATTR, from);
+		model.addAttribute(TO_ATTR, to);
+		return "doctors/shifts";
+	}
+
+	/**
+	 * @see #getDoctorShifts(Long, YearMonth, YearMonth, Model)
+	 */
+	@GetMapping(value = "/{doctorId}/shifts", produces = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseBody
+	public List<DoctorShift> getDoctorShiftsAsJson(@PathVariable Long doctorId, @RequestParam YearMonth from,
+			@RequestParam YearMonth to) {
+		log.info("Request received: get the shifts of doctor " + doctorId + " from " + from + " to " + to);
+		if (from.isAfter(to)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The range starts after it ends");
+		}
+		if (ChronoUnit.MONTHS.between(from, to) + 1 > shiftsMaxMonths) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"At most " + shiftsMaxMonths + " months can be requested at once");
+		}
+		return doctorShiftService.getShifts(doctorId, from, to);
+	}
+
 	// TODO add option to delete doctor
 
 	/**
@@ -150,13 +220,17 @@ public class DoctorsController {
 				log.debug("The doctor already exists, as the id was provided");
 				doctor.setId(Long.parseLong(formData.getFirst("id")));
 				log.debug("The doctor's id is: " + doctor.getId());
-				doctor = doctorService.getDoctor(doctor.getId()).getContent();
-				EntityModel<ShiftConfiguration> shiftConfEntity = doctorService.getShiftConfiguration(doctor.getId());
+				CompletableFuture<EntityModel<Doctor>> doctorFuture = asyncDoctorService.getDoctor(doctor.getId());
+				CompletableFuture<EntityModel<ShiftConfiguration>> shiftConfFuture = 
+						asyncDoctorService.getShiftConfiguration(doctor.getId());
+				// The received resources may be cached, so they are copied instead of modified
+				doctor.setStatus(UpstreamExecutor.join(doctorFuture).getContent().getStatus());
+				EntityModel<ShiftConfiguration> shiftConfEntity = UpstreamExecutor.join(shiftConfFuture);
 				if (shiftConfEntity == null) {
 					log.info("The doctor does not have an associated shift configuration. Creating a default one");
 					shiftConf = getDefaultShiftConfig();
 				} else {
-					shiftConf = shiftConfEntity.getContent();
+					shiftConf = copyShiftConfig(shiftConfEntity.getContent());
 				}
 			} else {
 				log.debug("The doctor doesn't already exist. Creating an empty shift configuration");
@@ -209,20 +283,14 @@ public class DoctorsController {
 			}
 
 			// Shift preferences
-			CollectionModel<EntityModel<AllowedShift>> allowedShifts = allowedShiftService.getAllowedShifts();
-			// allowedShiftMap will allow to easily map between a shift id and an AllowedShift
-			Map<Integer, AllowedShift> allowedShiftMap = allowedShifts.getContent().stream()
-					.map(allowedShiftEntity -> allowedShiftEntity.getContent())
-					.collect(Collectors.toMap(AllowedShift::getId, allowedShift -> allowedShift));
-			// Start checking shift preferences
 			List<String> wantedShiftsStrings = formData.get("wantedShifts");
-			shiftConf.setWantedShifts(mapShiftPreferences(wantedShiftsStrings, allowedShiftMap));
+			shiftConf.setWantedShifts(mapShiftPreferences(wantedShiftsStrings));
 			log.debug("The wanted shifts are: " + shiftConf.getWantedShifts());
 			List<String> unwantedShiftsStrings = formData.get("unwantedShifts");
-			shiftConf.setUnwantedShifts(mapShiftPreferences(unwantedShiftsStrings, allowedShiftMap));
+			shiftConf.setUnwantedShifts(mapShiftPreferences(unwantedShiftsStrings));
 			log.debug("The unwanted shifts are: " + shiftConf.getUnwantedShifts());
 			List<String> wantedConsultationsStrings = formData.get("wantedConsultations");
-			shiftConf.setWantedConsultations(mapShiftPreferences(wantedConsultationsStrings, allowedShiftMap));
+			shiftConf.setWantedConsultations(mapShiftPreferences(wantedConsultationsStrings));
 			log.debug("The wanted consultations are: " + shiftConf.getWantedConsultations());
 
 			log.debug("The resulting doctor is: " + doctor);
@@ -242,6 +310,31 @@ public class DoctorsController {
 		return getDoctor(doctor.getId(), model);
 	}
 	
+	/**
+	 * @param shiftConfig The shift configuration to be copied
+	 * @return A new {@link ShiftConfiguration} with the same values. The shift
+	 *         preferences sets are also copied
+	 */
+	private ShiftConfiguration copyShiftConfig(ShiftConfiguration shiftConfig) {
+		ShiftConfiguration copy = new ShiftConfiguration();
+		copy.setDoctorId(shiftConfig.getDoctorId());
+		copy.setMaxShifts(shiftConfig.getMaxShifts());
+		copy.setMinShifts(shiftConfig.getMinShifts());
+		copy.setNumConsultations(shiftConfig.getNumConsultations());
+		copy.setDoesCycleShifts(shiftConfig.getDoesCycleShifts());
+		copy.setHasShiftsOnlyWhenCycleShifts(shiftConfig.getHasShiftsOnlyWhenCycleShifts());
+		if (shiftConfig.getUnwantedShifts() != null) {
+			copy.setUnwantedShifts(new TreeSet<>(shiftConfig.getUnwantedShifts()));
+		}
+		if (shiftConfig.getWantedShifts() != null) {
+			copy.setWantedShifts(new TreeSet<>(shiftConfig.getWantedShifts()));
+		}
+		if (shiftConfig.getWantedConsultations() != null) {
+			copy.setWantedConsultations(new TreeSet<>(shiftConfig.getWantedConsultations()));
+		}
+		return copy;
+	}
+	
 	/**
 	 * @param checkBoxStr The String value from the MultiValueMap corresponding to
 	 *                    the check box field.
@@ -260,23 +353,26 @@ public class DoctorsController {
 	 * This method converts a list of allowed shifts ids into a set of
 	 * {@link AllowedShift}s
 	 * 
-	 * @param shiftIds        The list of ids. If it is null, the return set will be
-	 *                        empty
-	 * @param allowedShiftMap Used to map from an allowed shift id to an
-	 *                        {@link AllowedShift}
+	 * @param shiftIds The list of ids. If it is null, the return set will be empty
 	 * @return The mapped set of {@link AllowedShift}s
+	 * @throws ResponseStatusException if any of the ids does not correspond to an
+	 *                                 {@link AllowedShift}
 	 */
-	private SortedSet<AllowedShift> mapShiftPreferences(@Nullable List<String> shiftIds, 
-			Map<Integer, AllowedShift> allowedShiftMap) {
+	private SortedSet<AllowedShift> mapShiftPreferences(@Nullable List<String> shiftIds) {
 		log.debug("Request to map shift preferences: " + shiftIds);
-		log.debug("The map of allowed shifts is: " + allowedShiftMap);
+		SortedSet<AllowedShift> shiftPreferences = new TreeSet<>();
 		if (shiftIds == null) {
 			log.debug("shiftsIds is null. Returning an empty set.");
-			return new TreeSet<>();
+			return shiftPreferences;
+		}
+		for (String idStr : shiftIds) {
+			AllowedShift allowedShift = allowedShiftCatalog.getAllowedShift(Integer.parseInt(idStr));
+			if (allowedShift == null) {
+				log.info("The allowed shift " + idStr + " does not exist");
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+			}
+			shiftPreferences.add(allowedShift);
 		}
-		SortedSet<AllowedShift> shiftPreferences = shiftIds.stream()
-				.map(idStr -> allowedShiftMap.get(Integer.parseInt(idStr)))
-				.collect(Collectors.toCollection(() -> new TreeSet<>()));
 		log.debug("The checked shift preferences are: " + shiftPreferences);
 		return shiftPreferences;
 	}
@@ -299,25 +395,25 @@ public class DoctorsController {
 		ShiftConfiguration shiftConfig = getDefaultShiftConfig();
 
 		if (doctorId != null) {
-			// Maybe, these two requests could be performed simultaneously (Asynchronous)
-			EntityModel<Doctor> doctorResource = doctorService.getDoctor(doctorId);
+			// Both requests are independent, so they are sent at the same time
+			CompletableFuture<EntityModel<Doctor>> doctorFuture = asyncDoctorService.getDoctor(doctorId);
+			CompletableFuture<EntityModel<ShiftConfiguration>> shiftConfigFuture = 
+					asyncDoctorService.getShiftConfiguration(doctorId);
+
+			EntityModel<Doctor> doctorResource = UpstreamExecutor.join(doctorFuture);
 			if (doctorResource != null) {
 				doctor = doctorAssembler.toDoctor(doctorResource);
 			}
 
-			EntityModel<ShiftConfiguration> shiftConfigResource = doctorService.getShiftConfiguration(doctorId);
+			EntityModel<ShiftConfiguration> shiftConfigResource = UpstreamExecutor.join(shiftConfigFuture);
 			if (shiftConfigResource != null) {
-				shiftConfig = shiftConfigResource.getContent();
+				// The shift preferences lists are set below, so the cached resource is copied
+				shiftConfig = copyShiftConfig(shiftConfigResource.getContent());
 			}
 		}
-		// The allowed shifts will be represented as a list
-		CollectionModel<EntityModel<AllowedShift>> allowedShiftResources = allowedShiftService.getAllowedShifts();
-		List<AllowedShift> allowedShifts = new LinkedList<>();
-		for (EntityModel<AllowedShift> allowedShiftResource : allowedShiftResources) {
-			allowedShifts.add(allowedShiftResource.getContent());
-		}
-		allowedShifts.sort(Comparator.comparingInt(AllowedShift::getId));
-		log.debug("The allowed shifts after being sorted are: " + allowedShifts);
+		// The allowed shifts will be represented as a list, sorted by id
+		List<AllowedShift> allowedShifts = allowedShiftCatalog.getAllowedShifts();
+		log.debug("The allowed shifts are: " + allowedShifts);
 
 		// Map the shift preferences to lists. This will make it easier to check if a
 		// shift preference contains a certain shift
@@ -1,24 +1,37 @@
 package guardians.webapp.controllers;
 
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.YearMonth;
-import java.util.Comparator;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.lang.Nullable;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -26,17 +39,32 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import guardians.webapp.controllers.assemblers.DoctorAssembler;
+import guardians.webapp.controllers.assemblers.LinkTemplate;
 import guardians.webapp.controllers.assemblers.ScheduleAssembler;
 import guardians.webapp.model.Calendar;
 import guardians.webapp.model.DayConfiguration;
 import guardians.webapp.model.Doctor;
 import guardians.webapp.model.Schedule;
+import guardians.webapp.model.ScheduleSummary;
+import guardians.webapp.services.AsyncScheduleService;
 import guardians.webapp.services.DoctorService;
+import guardians.webapp.services.RenderedExcelCache;
+import guardians.webapp.services.RenderedExcelCache.RenderedExcel;
 import guardians.webapp.services.Schedule2ExcelService;
+import guardians.webapp.services.ScheduleCache;
+import guardians.webapp.services.ScheduleGenerationJob;
+import guardians.webapp.services.ScheduleGenerationJobs;
+import guardians.webapp.services.ScheduleImportException;
 import guardians.webapp.services.ScheduleService;
+import guardians.webapp.services.UpstreamExecutor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -53,9 +81,17 @@ public class ScheduleController {
 	private ScheduleService scheduleService;
 	@Autowired
 	private DoctorService doctorService;
+	@Autowired
+	private AsyncScheduleService asyncScheduleService;
 	
 	@Autowired
 	private Schedule2ExcelService schedule2ExcelService; 
+	@Autowired
+	private ScheduleGenerationJobs scheduleGenerationJobs;
+	@Autowired
+	private RenderedExcelCache renderedExcelCache;
+	@Autowired
+	private ScheduleCache scheduleCache;
 	
 	@Autowired
 	private ScheduleAssembler scheduleAssembler;
@@ -70,6 +106,11 @@ public class ScheduleController {
 	@Value("${guardians.default.useXlsx}")
 	private Boolean defaultUseXlsx;
 	
+	@Value("${guardians.schedule-generation.events-timeout}")
+	private Long eventsTimeout;
+	@Value("${guardians.excel.export.max-months}")
+	private Integer exportMaxMonths;
+	
 	private static final String YEAR_MONTH_ATTR = "yearMonth";
 	private static final String START_DATE_ATTR = "startDate";
 	private static final String END_DATE_ATTR = "endDate";
@@ -78,8 +119,12 @@ public class ScheduleController {
 	private static final String SCHEDULES_ATTR = "schedules";
 	private static final String SCHEDULE_ATTR = "schedule";
 	private static final String USE_LIST_ATTR = "useListView";
+	private static final String IMPORT_ERRORS_ATTR = "importErrors";
 	
 	private static final String SCHEDULE_HREF = "scheduleHref";
+	private static final String JOB_ID = "jobId";
+	private static final String EVENTS_HREF = "eventsHref";
+	private static final String CANCEL_HREF = "cancelHref";
 	
 	/**
 	 * This method handles requests to get a summarized list of the existent
@@ -95,12 +140,12 @@ public class ScheduleController {
 	@GetMapping("")
 	public String getSchedulesSummary(Model model) {
 		log.info("Request to get the schedule summaries");
-		CollectionModel<EntityModel<Schedule>> scheduleEntities = scheduleService.getSchedules();
-		List<Schedule> schedules = scheduleAssembler.toList(scheduleEntities);
-		schedules.sort(Comparator.comparing(Schedule::getYear)
-						.thenComparing(Schedule::getMonth)
-						.reversed());
-		model.addAttribute(SCHEDULES_ATTR, schedules);
+		// The list is requested before the summaries, as it may be cached while they
+		// are being created
+		CollectionModel<EntityModel<Schedule>> scheduleResources = scheduleService.getSchedules();
+		List<ScheduleSummary> summaries = scheduleCache.getScheduleSummaries(LinkTemplate.currentBaseUri(),
+				baseUri -> scheduleAssembler.toSummaryList(scheduleResources, baseUri));
+		model.addAttribute(SCHEDULES_ATTR, summaries);
 		return "schedules/schedules";
 	}
 	
@@ -164,17 +209,23 @@ public class ScheduleController {
 	}
 	
 	/**
-	 * This method handles requests to generate a new {@link Schedule}
+	 * This method handles requests to generate a new {@link Schedule}. The
+	 * schedule is generated in the background, so this method returns as soon as
+	 * the generation has been started
 	 * 
 	 * @param yearMonth The year and month for which the schedule is to be generated
-	 * @return A Map that should be serialized into JSON. It will contain the key:
+	 * @return A Map that should be serialized into JSON. It will contain the keys:
+	 *         JOB_ID, the id of the generation job; EVENTS_HREF, the URI where the
+	 *         progress of the generation will be sent as Server-Sent Events;
+	 *         CANCEL_HREF, the URI where a DELETE stops the generation; and
 	 *         SCHEDULE_HREF whose value will be the URI where the schedule
 	 *         information will be shown (A GET to this URI will return html
 	 *         content).
+	 * @see ScheduleGenerationJob
 	 */
 	@PostMapping("/new")
 	@ResponseBody
-	public Map<String, String> newSchedule(@RequestParam YearMonth yearMonth, 
+	public ResponseEntity<Map<String, String>> newSchedule(@RequestParam YearMonth yearMonth, 
 			@RequestBody List<DayConfiguration> dayConfs) {
 		log.info("Request to create a schedule for " + yearMonth);
 		log.debug("The day configurations are: " + dayConfs);
@@ -182,12 +233,64 @@ public class ScheduleController {
 		calendar.setMonth(yearMonth.getMonthValue());
 		calendar.setYear(yearMonth.getYear());
 		calendar.setDayConfigurations(new TreeSet<>(dayConfs));
-		EntityModel<Schedule> scheduleEntity = scheduleService.newSchedule(calendar);
-		log.debug("The generated schedule is: " + scheduleEntity);
-		Schedule schedule = scheduleAssembler.toSchedule(scheduleEntity);
+		// The links have to be created while the request is being handled
+		String scheduleHref = scheduleAssembler.getScheduleHref(yearMonth);
+		ScheduleGenerationJob job;
+		try {
+			job = scheduleGenerationJobs.submit(calendar, scheduleHref);
+		} catch (RejectedExecutionException e) {
+			log.warn("Too many schedules are being generated. Rejecting the generation of " + yearMonth);
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+		}
+		log.debug("The generation job is: " + job.getId());
 		Map<String,String> response = new HashMap<>();
-		response.put(SCHEDULE_HREF, schedule.getLinks().get("self"));
-		return response;
+		response.put(JOB_ID, job.getId());
+		response.put(EVENTS_HREF, linkTo(methodOn(ScheduleController.class)
+				.getScheduleGenerationEvents(job.getId())).withSelfRel().getHref());
+		response.put(CANCEL_HREF, linkTo(methodOn(ScheduleController.class)
+				.cancelScheduleGeneration(job.getId())).withSelfRel().getHref());
+		response.put(SCHEDULE_HREF, scheduleHref);
+		return ResponseEntity.accepted().body(response);
+	}
+	
+	/**
+	 * This method handles requests to follow the generation of a {@link Schedule}
+	 * 
+	 * @param jobId The id of the generation job, as returned by
+	 *              {@link #newSchedule(YearMonth, List)}
+	 * @return The emitter that will send the events of the job
+	 * @see ScheduleGenerationJob
+	 */
+	@GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter getScheduleGenerationEvents(@PathVariable String jobId) {
+		log.info("Request to follow the generation job: " + jobId);
+		ScheduleGenerationJob job = scheduleGenerationJobs.getJob(jobId);
+		if (job == null) {
+			log.info("The job " + jobId + " does not exist");
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+		}
+		SseEmitter emitter = new SseEmitter(eventsTimeout);
+		job.subscribe(emitter);
+		return emitter;
+	}
+	
+	/**
+	 * This method handles requests to stop the generation of a {@link Schedule}.
+	 * The schedule will stop being waited for, and the subscribers of the job will
+	 * receive a "cancelled" event
+	 * 
+	 * @param jobId The id of the generation job
+	 * @return No content if the job has been cancelled, or not found if it does not
+	 *         exist or has already finished
+	 */
+	@DeleteMapping("/jobs/{jobId}")
+	public ResponseEntity<Void> cancelScheduleGeneration(@PathVariable String jobId) {
+		log.info("Request to cancel the generation job: " + jobId);
+		if (!scheduleGenerationJobs.cancel(jobId)) {
+			log.info("The job " + jobId + " could not be cancelled");
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.noContent().build();
 	}
 	
 	@PostMapping("/{yearMonth}/confirm")
@@ -197,9 +300,23 @@ public class ScheduleController {
 		return getSchedule(yearMonth, false, model);
 	}
 	
+	/**
+	 * This method handles requests to download a {@link Schedule} as an excel file.
+	 * 
+	 * The files of confirmed schedules are cached, and sent with a weak ETag.
+	 * Requests whose If-None-Match header contains that ETag receive a 304 (Not
+	 * Modified) response, without creating the file
+	 * 
+	 * @param yearMonth  The month of the schedule
+	 * @param useXlsx    Whether a xlsx or a xls file is requested. If null, the
+	 *                   default one is used
+	 * @param webRequest The current request. It may be null, e.g. when building
+	 *                   links to this method
+	 * @return The excel file
+	 */
 	@GetMapping(value = "/{yearMonth}/download-as-excel", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-	public ResponseEntity<byte[]> downloadExcelFor(@PathVariable YearMonth yearMonth, 
-			@RequestParam(required = false) Boolean useXlsx) throws IOException {
+	public ResponseEntity<StreamingResponseBody> downloadExcelFor(@PathVariable YearMonth yearMonth, 
+			@RequestParam(required = false) Boolean useXlsx, @Nullable WebRequest webRequest) throws IOException {
 		log.info("Request to get the excel for the schedule of " + yearMonth);
 		if (useXlsx == null) {
 			log.info("The filetype to be created was not specified. Using Xlsx: " + defaultUseXlsx);
@@ -208,21 +325,49 @@ public class ScheduleController {
 			log.info("The requested filetype is xlsx: " + useXlsx);
 		}
 		
-		ResponseEntity<byte[]> resp = null;
+		ResponseEntity<StreamingResponseBody> resp = null;
 		boolean scheduleFound = false;
 		EntityModel<Schedule> scheduleEntity = scheduleService.getSchedule(yearMonth);
 		if (scheduleEntity != null) {
 			Schedule schedule = scheduleEntity.getContent();
 			if (schedule != null) {
 				scheduleFound = true;
-				log.debug("Requesting conversion to excel");
-				byte [] excelBytes = schedule2ExcelService.toExcel(schedule, useXlsx).toByteArray();
+				boolean isXlsx = useXlsx;
 				String fileName = yearMonth.toString();
 				fileName += useXlsx ? ".xlsx" : ".xls";
 				log.debug("The filename of the file sent is: " + fileName);
-				resp = ResponseEntity.ok()
-						.header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
-						.body(excelBytes);
+				if (ScheduleCache.isConfirmed(scheduleEntity)) {
+					log.debug("The schedule is confirmed. Its file can be cached");
+					RenderedExcelCache.Key key = new RenderedExcelCache.Key(yearMonth, isXlsx, 
+							schedule2ExcelService.getStyleFingerprint());
+					RenderedExcel renderedExcel = renderedExcelCache.get(key);
+					String eTag = renderedExcel != null 
+							? renderedExcel.getETag() 
+							: schedule2ExcelService.getETag(schedule, isXlsx);
+					if (webRequest != null && webRequest.checkNotModified(eTag)) {
+						log.info("The client already has the file of " + yearMonth);
+						return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+					}
+					if (renderedExcel == null) {
+						renderedExcel = this.renderCached(key, schedule, isXlsx, eTag);
+					}
+					byte[] excelBytes = renderedExcel.getBytes();
+					resp = ResponseEntity.ok()
+							.header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+							.eTag(renderedExcel.getETag())
+							.contentLength(excelBytes.length)
+							.body(outputStream -> outputStream.write(excelBytes));
+				} else {
+					// The excel is written directly to the response, instead of creating it
+					// in memory first
+					StreamingResponseBody excelBody = outputStream -> {
+						log.debug("Requesting conversion to excel");
+						schedule2ExcelService.writeExcel(schedule, isXlsx, outputStream);
+					};
+					resp = ResponseEntity.ok()
+							.header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+							.body(excelBody);
+				}
 			}
 		}
 		
@@ -233,13 +378,126 @@ public class ScheduleController {
 		return resp;
 	}
 	
+	/**
+	 * This method handles requests to download the {@link Schedule}s of several
+	 * months at once, either as a single excel file with a sheet per month or as
+	 * a zip file with an excel file per month.
+	 * 
+	 * The schedules are requested at the same time, and the months are rendered in
+	 * parallel. Months without a schedule are left out. In zip files, the cached
+	 * files of confirmed schedules are reused
+	 * 
+	 * @param from    The first month, included
+	 * @param to      The last month, included
+	 * @param useXlsx Whether xlsx or xls files are requested. If null, the
+	 *                default one is used
+	 * @param asZip   Whether a zip file is requested instead of a single excel
+	 *                file
+	 * @return The excel or zip file
+	 */
+	@GetMapping(value = "/download-as-excel", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+	public ResponseEntity<StreamingResponseBody> downloadExcelForRange(@RequestParam YearMonth from,
+			@RequestParam YearMonth to, @RequestParam(required = false) Boolean useXlsx,
+			@RequestParam(defaultValue = "false") boolean asZip) {
+		log.info("Request to get the excel for the schedules from " + from + " to " + to);
+		if (from.isAfter(to)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The range starts after it ends");
+		}
+		long months = ChronoUnit.MONTHS.between(from, to) + 1;
+		if (months > exportMaxMonths) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"At most " + exportMaxMonths + " months can be exported at once");
+		}
+		if (useXlsx == null) {
+			log.info("The filetype to be created was not specified. Using Xlsx: " + defaultUseXlsx);
+			useXlsx = defaultUseXlsx;
+		}
+		boolean isXlsx = useXlsx;
+		
+		log.debug("Requesting the schedules of " + months + " months");
+		Map<YearMonth, CompletableFuture<EntityModel<Schedule>>> scheduleFutures = new LinkedHashMap<>();
+		for (YearMonth yearMonth = from; !yearMonth.isAfter(to); yearMonth = yearMonth.plusMonths(1)) {
+			scheduleFutures.put(yearMonth, asyncScheduleService.getSchedule(yearMonth));
+		}
+		List<Schedule> schedules = new ArrayList<>();
+		Set<YearMonth> confirmed = new HashSet<>();
+		for (Map.Entry<YearMonth, CompletableFuture<EntityModel<Schedule>>> entry : scheduleFutures.entrySet()) {
+			EntityModel<Schedule> scheduleEntity;
+			try {
+				scheduleEntity = UpstreamExecutor.join(entry.getValue());
+			} catch (HttpClientErrorException.NotFound e) {
+				scheduleEntity = null;
+			}
+			if (scheduleEntity == null || scheduleEntity.getContent() == null) {
+				log.debug("There is no schedule for " + entry.getKey());
+				continue;
+			}
+			schedules.add(scheduleEntity.getContent());
+			if (ScheduleCache.isConfirmed(scheduleEntity)) {
+				confirmed.add(entry.getKey());
+			}
+		}
+		if (schedules.isEmpty()) {
+			log.info("There are no schedules from " + from + " to " + to);
+			return ResponseEntity.notFound().build();
+		}
+		
+		String fileName = from + "_" + to + (asZip ? ".zip" : isXlsx ? ".xlsx" : ".xls");
+		log.debug("The filename of the file sent is: " + fileName);
+		StreamingResponseBody body;
+		if (asZip) {
+			String styleFingerprint = schedule2ExcelService.getStyleFingerprint();
+			body = outputStream -> schedule2ExcelService.writeZip(schedules, isXlsx, schedule -> {
+				YearMonth yearMonth = YearMonth.of(schedule.getYear(), schedule.getMonth());
+				try {
+					if (confirmed.contains(yearMonth)) {
+						RenderedExcelCache.Key key = new RenderedExcelCache.Key(yearMonth, isXlsx, styleFingerprint);
+						return this.renderCached(key, schedule, isXlsx, schedule2ExcelService.getETag(schedule, isXlsx))
+								.getBytes();
+					}
+					return schedule2ExcelService.toExcel(schedule, isXlsx).toByteArray();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, outputStream);
+		} else {
+			body = outputStream -> schedule2ExcelService.writeExcel(schedules, isXlsx, outputStream);
+		}
+		return ResponseEntity.ok()
+				.header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+				.body(body);
+	}
+	
+	/**
+	 * Get the file of a confirmed schedule from the cache, creating it if it is
+	 * not cached
+	 */
+	private RenderedExcel renderCached(RenderedExcelCache.Key key, Schedule schedule, boolean isXlsx, 
+			String eTag) {
+		return renderedExcelCache.get(key, k -> {
+			try {
+				log.debug("Requesting conversion to excel");
+				return new RenderedExcel(schedule2ExcelService.toExcel(schedule, isXlsx).toByteArray(), eTag);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+	
 	@PostMapping("/{yearMonth}")
 	public String updateSchedule(@PathVariable YearMonth yearMonth, @RequestParam MultipartFile scheduleFile,
 			Model model) throws IOException {
 		log.info("Request received: update schedule of " + yearMonth +  " with " + scheduleFile.getOriginalFilename());
 		log.info("Trying to convert the file to a schedule");
 		boolean isXlsx = scheduleFile.getOriginalFilename().endsWith(".xlsx");
-		Schedule schedule = schedule2ExcelService.fromExcel(scheduleFile.getInputStream(), isXlsx);
+		Schedule schedule;
+		try (InputStream fileStream = scheduleFile.getInputStream()) {
+			schedule = schedule2ExcelService.fromExcel(fileStream, isXlsx, yearMonth);
+		} catch (ScheduleImportException e) {
+			log.info("The file contains errors: " + e.getErrors());
+			model.addAttribute(IMPORT_ERRORS_ATTR, e.getErrors());
+			return getSchedule(yearMonth, false, model);
+		}
 		log.info("Trying to update the schedule");
 		scheduleService.updateSchedule(yearMonth, schedule);
 		log.info("The schedule has been updated");
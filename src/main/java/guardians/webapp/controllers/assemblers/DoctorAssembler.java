@@ -1,12 +1,13 @@
 package guardians.webapp.controllers.assemblers;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
-
-import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.hateoas.EntityModel;
@@ -34,72 +35,87 @@ public class DoctorAssembler {
 	@Value("${api.links.shiftconf}")
 	private String shiftConfLink;
 
+	/**
+	 * The templates of the links of this webapp, indexed by the rel of the REST
+	 * api link they replace. They are resolved once, when the assembler is created
+	 */
+	private final Map<String, LinkTemplate> relTemplates = new HashMap<>();
+	/**
+	 * The rels of the REST api that have no equivalent link in this webapp
+	 */
+	private final Set<String> ignoredRels = new HashSet<>();
+
+	@PostConstruct
+	public void init() {
+		relTemplates.put("self", LinkTemplate.of(DoctorsController.class, "getDoctor", Long.class, Model.class));
+		relTemplates.put(updateDoctorLink,
+				LinkTemplate.of(DoctorsController.class, "editDoctor", Long.class, Model.class));
+		ignoredRels.add(doctorsLink);
+		ignoredRels.add(shiftConfLink);
+		log.info("The doctor link templates are: " + relTemplates);
+	}
+
 	/**
 	 * This method will convert the links contained in the {@link EntityModel}
 	 * representation of a {@link Doctor} (links pointing to the REST service), to
 	 * links of this web application
 	 * 
+	 * Note the content of the entity is not modified, as it may be shared by the
+	 * caches of the services. The links are set on a copy of it
+	 * 
 	 * @param entity
-	 * @return The {@link Doctor} containing the links
+	 * @return A copy of the {@link Doctor} containing the links
 	 */
 	public Doctor toDoctor(EntityModel<Doctor> entity) {
 		log.info("Request to map to doctor: " + entity);
-		Doctor doctor = entity.getContent();
+		Doctor doctor = this.toDoctor(entity, LinkTemplate.currentBaseUri());
+		log.info("The doctor's links are " + doctor.getLinks());
+		return doctor;
+	}
+
+	private Doctor toDoctor(EntityModel<Doctor> entity, String baseUri) {
+		Doctor doctor = copyOf(entity.getContent());
 		Map<String, String> links = new HashMap<>();
 		for (Link link : entity.getLinks()) {
 			String rel = link.getRel().value();
-			if (rel.equals("self")) {
-				log.debug("Parsing self relation");
-				Method methodToSelf = null;
-				try {
-					// The methods can not be acquired through the convenient methodOn() 
-					// static method on WebMvcLinkBuilder because methodOn proxies the returned 
-					// value. However, the String class is defined as final, so it cannot be 
-					// extended (so it cannot be proxied)
-					methodToSelf = DoctorsController.class.getMethod("getDoctor", Long.class, Model.class);
-				} catch (NoSuchMethodException e) {
-					log.error("The method DoctorsController.getDoctor(Long, Model) does not exist");
-				}
-				Link linkToSelf = linkTo(methodToSelf, doctor.getId()).withSelfRel();
-				log.debug("The link to self is: " + linkToSelf);
-				links.put("self", linkToSelf.getHref());
-			} else if (rel.equals(updateDoctorLink)) {
-				log.debug("Parsing updateDoctor relation");
-				Method methodToUpdate = null;
-				try {
-					methodToUpdate = DoctorsController.class.getMethod("editDoctor", Long.class, Model.class);
-				} catch (NoSuchMethodException e) {
-					log.error("The method DoctorsController.putDoctor(Doctor, Model) does not exist");
-				}
-				Link linkToUpdate = linkTo(methodToUpdate, doctor.getId()).withSelfRel();
-				log.debug("The link to update is: " + linkToUpdate);
-				links.put(updateDoctorLink, linkToUpdate.getHref());
-			} else if (rel.equals(doctorsLink)) {
-				log.debug("Parsing doctors relation: Pass");
-			} else if (rel.equals(shiftConfLink)) {
-				log.debug("Parsing shift-config relation: Pass");
-			} else {
-				log.warn("Unknown relation while parsing doctor's links: " + link.getRel().value());
+			LinkTemplate template = relTemplates.get(rel);
+			if (template != null) {
+				links.put(rel, template.expand(baseUri, doctor.getId()));
+			} else if (!ignoredRels.contains(rel)) {
+				log.warn("Unknown relation while parsing doctor's links: " + rel);
 			}
 		}
 		doctor.setLinks(links);
-		log.info("The doctor's links are " + links);
 		return doctor;
 	}
 
+	private static Doctor copyOf(Doctor doctor) {
+		Doctor copy = new Doctor();
+		copy.setId(doctor.getId());
+		copy.setFirstName(doctor.getFirstName());
+		copy.setLastNames(doctor.getLastNames());
+		copy.setEmail(doctor.getEmail());
+		copy.setStatus(doctor.getStatus());
+		return copy;
+	}
+
 	/**
 	 * This method will convert from an iterable of {@link Doctor}
 	 * {@link EntityModel}s to a list of {@link Doctor}s with links pointing to this
-	 * web application
+	 * web application. As in {@link #toDoctor(EntityModel)}, the doctors are
+	 * copies
 	 * 
 	 * @param entities
 	 * @return The created list of doctors
 	 */
 	public List<Doctor> toList(Iterable<EntityModel<Doctor>> entities) {
-		List<Doctor> doctors = new LinkedList<>();
+		// The base URI is the same for all the doctors
+		String baseUri = LinkTemplate.currentBaseUri();
+		List<Doctor> doctors = new ArrayList<>();
 		for (EntityModel<Doctor> doctorEntity : entities) {
-			doctors.add(this.toDoctor(doctorEntity));
+			doctors.add(this.toDoctor(doctorEntity, baseUri));
 		}
+		log.debug("Mapped the links of " + doctors.size() + " doctors");
 		return doctors;
 	}
 }
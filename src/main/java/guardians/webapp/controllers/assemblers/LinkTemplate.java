@@ -0,0 +1,117 @@
+package guardians.webapp.controllers.assemblers;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * This class represents the path of a controller method, resolved once from
+ * its mapping annotations (e.g. "/doctors/{doctorId}").
+ *
+ * Expanding it only concatenates strings, so it is much cheaper than building
+ * the link with {@link org.springframework.hateoas.server.mvc.WebMvcLinkBuilder},
+ * which inspects the method and its annotations every time.
+ *
+ * @author miggoncan
+ */
+public class LinkTemplate {
+	private final String template;
+	/**
+	 * The parts of the template between the variables. There is always one more
+	 * literal than variables
+	 */
+	private final String[] literals;
+
+	private LinkTemplate(String template) {
+		this.template = template;
+		List<String> literals = new ArrayList<>();
+		int start = 0;
+		int open = template.indexOf('{');
+		while (open >= 0) {
+			int close = template.indexOf('}', open);
+			if (close < 0) {
+				throw new IllegalArgumentException("Unclosed variable in the template: " + template);
+			}
+			literals.add(template.substring(start, open));
+			start = close + 1;
+			open = template.indexOf('{', start);
+		}
+		literals.add(template.substring(start));
+		this.literals = literals.toArray(new String[0]);
+	}
+
+	/**
+	 * Resolve the path of a controller method. If the class or the method are
+	 * mapped to several paths, the first one is used
+	 *
+	 * @param controller     The class of the controller
+	 * @param methodName     The name of the method
+	 * @param parameterTypes The types of the parameters of the method
+	 * @return The template of the path of the method
+	 * @throws IllegalArgumentException if the method does not exist
+	 */
+	public static LinkTemplate of(Class<?> controller, String methodName, Class<?>... parameterTypes) {
+		Method method;
+		try {
+			method = controller.getMethod(methodName, parameterTypes);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(
+					"The method " + controller.getSimpleName() + "." + methodName + " does not exist", e);
+		}
+		return new LinkTemplate(pathOf(AnnotatedElementUtils.findMergedAnnotation(controller, RequestMapping.class))
+				+ pathOf(AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class)));
+	}
+
+	private static String pathOf(RequestMapping mapping) {
+		if (mapping == null || mapping.path().length == 0) {
+			return "";
+		}
+		return mapping.path()[0];
+	}
+
+	/**
+	 * @return The base URI of the links created while handling the current
+	 *         request, as used by
+	 *         {@link org.springframework.hateoas.server.mvc.WebMvcLinkBuilder}. If
+	 *         there is no current request, an empty String, so the links only
+	 *         contain the path
+	 */
+	public static String currentBaseUri() {
+		if (RequestContextHolder.getRequestAttributes() == null) {
+			return "";
+		}
+		return ServletUriComponentsBuilder.fromCurrentServletMapping().build().toUriString();
+	}
+
+	/**
+	 * @param baseUri The base URI of the link. See {@link #currentBaseUri()}
+	 * @param values  The values of the variables of the template, in order. They
+	 *                are encoded as path segments
+	 * @return The href of the link
+	 */
+	public String expand(String baseUri, Object... values) {
+		if (values.length != literals.length - 1) {
+			throw new IllegalArgumentException(
+					"The template " + template + " expects " + (literals.length - 1) + " values");
+		}
+		StringBuilder href = new StringBuilder(baseUri.length() + template.length() + 16);
+		href.append(baseUri).append(literals[0]);
+		for (int i = 0; i < values.length; i++) {
+			href.append(UriUtils.encodePathSegment(String.valueOf(values[i]), StandardCharsets.UTF_8))
+					.append(literals[i + 1]);
+		}
+		return href.toString();
+	}
+
+	@Override
+	public String toString() {
+		return template;
+	}
+}
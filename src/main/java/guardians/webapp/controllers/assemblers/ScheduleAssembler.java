@@ -1,29 +1,30 @@
 package guardians.webapp.controllers.assemblers;
 
-import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
-
-import java.io.IOException;
-import java.lang.reflect.Method;
-import java.time.DayOfWeek;
-import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.Link;
 import org.springframework.stereotype.Component;
 import org.springframework.ui.Model;
+import org.springframework.web.context.request.WebRequest;
 
 import guardians.webapp.controllers.ScheduleController;
+import guardians.webapp.model.MonthGrid;
 import guardians.webapp.model.Schedule;
 import guardians.webapp.model.ScheduleDay;
+import guardians.webapp.model.ScheduleSummary;
 import lombok.extern.slf4j.Slf4j;
 
 @Component
@@ -33,7 +34,7 @@ public class ScheduleAssembler {
 	private String calendarLink;
 	@Value("${api.links.schedules}")
 	private String schedulesLink;
-	@Value("${api.links.scheduleStatus")
+	@Value("${api.links.scheduleStatus}")
 	private String scheduleStatusLink;
 	@Value("${api.links.confirmSchedule}")
 	private String confirmScheduleLink;
@@ -43,141 +44,128 @@ public class ScheduleAssembler {
 	@Value("${guardians.default.useXlsx}")
 	private Boolean defaultUseXlsx;
 
+	private LinkTemplate scheduleTemplate;
+	private LinkTemplate confirmTemplate;
+	private LinkTemplate downloadTemplate;
+	/**
+	 * The rels of the REST api that have no equivalent link in this webapp
+	 */
+	private final Set<String> ignoredRels = new HashSet<>();
+
+	@PostConstruct
+	public void init() {
+		scheduleTemplate = LinkTemplate.of(ScheduleController.class, "getSchedule", YearMonth.class, 
+				Boolean.class, Model.class);
+		confirmTemplate = LinkTemplate.of(ScheduleController.class, "confirmSchedule", YearMonth.class, 
+				Model.class);
+		downloadTemplate = LinkTemplate.of(ScheduleController.class, "downloadExcelFor", YearMonth.class,
+				Boolean.class, WebRequest.class);
+		ignoredRels.add(scheduleStatusLink);
+		ignoredRels.add(calendarLink);
+		log.info("The schedule link templates are: " + scheduleTemplate + ", " + confirmTemplate + ", "
+				+ downloadTemplate);
+	}
+
 	/**
 	 * This method will convert the links contained in the {@link EntityModel}
 	 * representation of a {@link Schedule} (links pointing to the REST service), to
 	 * links of this web application
 	 * 
+	 * Note the content of the entity is not modified, as it may be shared by the
+	 * caches of the services. The links and the grid are set on a copy of it,
+	 * which shares the days with the original
+	 * 
 	 * @param entity
-	 * @return The {@link Schedule} containing the links
+	 * @return A copy of the {@link Schedule} containing the links
 	 */
 	public Schedule toSchedule(EntityModel<Schedule> entity) {
 		log.info("Request to map to schedule: " + entity);
+		return this.toSchedule(entity, LinkTemplate.currentBaseUri());
+	}
 
-		log.info("Mapping links of the schedule");
-		Schedule schedule = entity.getContent();
+	private Schedule toSchedule(EntityModel<Schedule> entity, String baseUri) {
+		log.debug("Mapping links of the schedule");
+		Schedule schedule = copyOf(entity.getContent());
 		YearMonth yearMonth = YearMonth.of(schedule.getYear(), schedule.getMonth());
 		Map<String, String> links = new HashMap<>();
 		for (Link link : entity.getLinks()) {
 			String rel = link.getRel().value();
 			if (rel.equals("self")) {
-				log.debug("Parsing self relation");
-				Method methodToSelf = null;
-				try {
-					// The methods can not be acquired through the convenient methodOn()
-					// static method on WebMvcLinkBuilder because methodOn proxies the returned
-					// value. However, the String class is defined as final, so it cannot be
-					// extended (so it cannot be proxied)
-					methodToSelf = ScheduleController.class.getMethod("getSchedule", YearMonth.class, 
-							Boolean.class, Model.class);
-				} catch (NoSuchMethodException e) {
-					log.error("The method ScheduleController.getSchedule(YearMonth, Boolean, Model) does not exist");
-				}
-				Link linkToSelf = linkTo(methodToSelf, yearMonth).withSelfRel();
-				log.debug("The link to self is: " + linkToSelf);
-				links.put("self", linkToSelf.getHref());
-			} else if (rel.equals(scheduleStatusLink)) {
-				log.debug("Parsing schedule status relation: Pass");
-			} else if (rel.equals(calendarLink)) {
-				log.debug("Parsing calendar relation: Pass");
+				links.put("self", scheduleTemplate.expand(baseUri, yearMonth));
 			} else if (rel.equals(confirmScheduleLink)) {
-				log.debug("Parsing confirm schedule relation");
-				Method methodToConfirm = null;
-				try {
-					methodToConfirm = ScheduleController.class.getMethod("confirmSchedule", YearMonth.class,
-							Model.class);
-				} catch (NoSuchMethodException e) {
-					log.error("The method ScheduleController.confirmSchedule(YearMonth, Model) does not exist");
-				}
-				Link linkToConfirm = linkTo(methodToConfirm, yearMonth).withSelfRel();
-				log.debug("The link to confirm is: " + linkToConfirm);
-				links.put(confirmScheduleLink, linkToConfirm.getHref());
-			} else {
-				log.warn("Unknown relation while parsing schedule's links: " + link.getRel().value());
+				links.put(confirmScheduleLink, confirmTemplate.expand(baseUri, yearMonth));
+			} else if (!ignoredRels.contains(rel)) {
+				log.warn("Unknown relation while parsing schedule's links: " + rel);
 			}
 		}
 		// Link to download the schedule
-		// To allow the client to decide whether xlsx is used or not, change defaultUseXlsx with null.
-		// Then, the generated URI will have a parameter as 'useXlsx={useXlsx}' where the client will have to
-		// change '{useXlsx}' for either 'true' or 'false'
-		Link linktToDownload = null;
-		try {
-			linktToDownload = linkTo(methodOn(ScheduleController.class).downloadExcelFor(yearMonth, defaultUseXlsx)).withSelfRel();
-		} catch (IOException e) {
-			log.error("Unexpected exception while getting link to download schedule: " + e);
-		}
-		links.put(downloadScheduleLink, linktToDownload.getHref());
-		log.info("The created links are: " + links);
+		// To allow the client to decide whether xlsx is used or not, remove the query.
+		// Then, the client will have to add 'useXlsx=true' or 'useXlsx=false'
+		links.put(downloadScheduleLink, downloadTemplate.expand(baseUri, yearMonth) + "?useXlsx=" + defaultUseXlsx);
+		log.debug("The created links are: " + links);
 		schedule.setLinks(links);
 
 		SortedSet<ScheduleDay> scheduleDays = schedule.getDays();
 		if (scheduleDays == null || scheduleDays.isEmpty()) {
 			log.info("The schedule day does not contains days");
 		} else {
-			log.info("Mapping the schedule days to the weeks list");
-			List<List<ScheduleDay>> weeks = new LinkedList<>();
-			List<ScheduleDay> currWeek = new ArrayList<>(7);
-			LocalDate dayOfMonth = yearMonth.atDay(1);
-			// Fill the currWeek list until the dayOfMonth
-			// E.g. if dayOfMonth is a Wednesday, two days have to be added (previous Monday
-			// and Tuesday)
-			int daysToAdd = dayOfMonth.getDayOfWeek().getValue() - 1;
-			log.debug("The first day of the month has value: " + dayOfMonth.getDayOfWeek().getValue());
-			log.debug("Number of days to be added before the first day of the month: " + daysToAdd);
-			for (int i = 0; i < daysToAdd; i++) {
-				int day = dayOfMonth.minusDays(daysToAdd - i).getDayOfMonth();
-				currWeek.add(createEmtpyScheduleDay(day));
-			}
-			log.debug("The current week after adding the days before the first day of the month is: " + currWeek);
-			// Now, fill the weeks list with the real schedule days
-			for (ScheduleDay scheduleDay : schedule.getDays()) {
-				if (scheduleDay.getShifts().isEmpty()) {
-					scheduleDay.setShifts(Collections.emptySet());
-				}
-				if (scheduleDay.getConsultations().isEmpty()) {
-					scheduleDay.setConsultations(Collections.emptySet());
-				}
-				currWeek.add(scheduleDay);
-
-				if (dayOfMonth.getDayOfWeek() == DayOfWeek.SUNDAY) {
-					log.debug("Adding week: " + currWeek);
-					log.debug("The number of days being added is: " + currWeek.size());
-					weeks.add(currWeek);
-					currWeek = new ArrayList<>(7);
-				}
-				dayOfMonth = dayOfMonth.plusDays(1);
-			}
-			dayOfMonth = yearMonth.atEndOfMonth();
-			// Now we add more days until reaching a Sunday
-			daysToAdd = 7 - dayOfMonth.getDayOfWeek().getValue();
-			log.debug("Number of days to be added after the last day of the month: " + daysToAdd);
-			for (int i = 0; i < daysToAdd; i++) {
-				int day = dayOfMonth.plusDays(i + 1).getDayOfMonth();
-				currWeek.add(createEmtpyScheduleDay(day));
-			}
-			if (daysToAdd > 0) {
-				log.debug("The current week after adding the days after the last day of the month is: " + currWeek);
-				log.debug("The number of days being added is: " + currWeek.size());
-				weeks.add(currWeek);
-			}
-			log.debug("The created list of weeks is: " + weeks);
-			schedule.setWeeks(weeks);
+			log.info("Mapping the schedule days to the month grid");
+			MonthGrid grid = MonthGrid.of(yearMonth);
+			schedule.setGrid(grid);
+			schedule.setGridDays(grid.layout(scheduleDays));
+			log.debug("The month grid has " + grid.getWeeks() + " weeks, starting at cell " + grid.getOffset());
 		}
 
 		log.debug("The mapped schedule is: " + schedule);
 		return schedule;
 	}
 
-	private ScheduleDay createEmtpyScheduleDay(Integer day) {
-		log.debug("Request to create an emtpy schedule day for: " + day);
-		ScheduleDay scheduleDay = new ScheduleDay();
-		scheduleDay.setDay(day);
-		scheduleDay.setIsWorkingDay(false);
-		scheduleDay.setCycle(null);
-		scheduleDay.setShifts(null);
-		scheduleDay.setConsultations(null);
-		log.debug("The created schedule day is: " + scheduleDay);
-		return scheduleDay;
+	private static Schedule copyOf(Schedule schedule) {
+		Schedule copy = new Schedule();
+		copy.setMonth(schedule.getMonth());
+		copy.setYear(schedule.getYear());
+		copy.setStatus(schedule.getStatus());
+		copy.setDays(schedule.getDays());
+		return copy;
+	}
+
+	/**
+	 * This method will convert from an iterable of {@link Schedule}
+	 * {@link EntityModel}s to a list of {@link ScheduleSummary}s, sorted from the
+	 * most recent to the oldest month. Unlike {@link #toList(Iterable)}, the days
+	 * of the schedules are ignored
+	 * 
+	 * @param entities
+	 * @param baseUri  The base URI of the links. See
+	 *                 {@link LinkTemplate#currentBaseUri()}
+	 * @return The created list of summaries. It cannot be modified
+	 */
+	public List<ScheduleSummary> toSummaryList(Iterable<EntityModel<Schedule>> entities, String baseUri) {
+		List<ScheduleSummary> summaries = new ArrayList<>();
+		for (EntityModel<Schedule> scheduleEntity : entities) {
+			Schedule schedule = scheduleEntity.getContent();
+			ScheduleSummary summary = new ScheduleSummary();
+			summary.setYear(schedule.getYear());
+			summary.setMonth(schedule.getMonth());
+			summary.setStatus(schedule.getStatus());
+			summary.setLinks(Collections.singletonMap("self", 
+					scheduleTemplate.expand(baseUri, YearMonth.of(schedule.getYear(), schedule.getMonth()))));
+			summaries.add(summary);
+		}
+		summaries.sort(Comparator.comparing(ScheduleSummary::getYear)
+				.thenComparing(ScheduleSummary::getMonth)
+				.reversed());
+		log.debug("Created the summaries of " + summaries.size() + " schedules");
+		return Collections.unmodifiableList(summaries);
+	}
+
+	/**
+	 * @param yearMonth The month of the schedule
+	 * @return The href of this web application where the schedule of the given
+	 *         month is shown
+	 */
+	public String getScheduleHref(YearMonth yearMonth) {
+		return scheduleTemplate.expand(LinkTemplate.currentBaseUri(), yearMonth);
 	}
 
 	/**
@@ -189,9 +177,11 @@ public class ScheduleAssembler {
 	 * @return The created list of doctors
 	 */
 	public List<Schedule> toList(Iterable<EntityModel<Schedule>> entities) {
-		List<Schedule> schedules = new LinkedList<>();
+		// The base URI is the same for all the schedules
+		String baseUri = LinkTemplate.currentBaseUri();
+		List<Schedule> schedules = new ArrayList<>();
 		for (EntityModel<Schedule> scheduleEntity : entities) {
-			schedules.add(this.toSchedule(scheduleEntity));
+			schedules.add(this.toSchedule(scheduleEntity, baseUri));
 		}
 		return schedules;
 	}
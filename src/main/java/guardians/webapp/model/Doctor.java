@@ -7,15 +7,22 @@ import org.springframework.hateoas.server.core.Relation;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
  * This class represents the information related to a {@link Doctor}
  * 
+ * Two doctors are equal if they have the same id, so they can be found in sets
+ * without comparing the rest of their attributes (e.g. their links, which may
+ * change while the doctor is in a set)
+ * 
  * @author miggoncan
  */
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Relation(value = "doctor", collectionRelation = "doctors")
 public class Doctor {
+	@EqualsAndHashCode.Include
 	private Long id;
 	private String firstName;
 	private String lastNames;
@@ -0,0 +1,23 @@
+package guardians.webapp.model;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * This class represents an assignment of a {@link Doctor} in a
+ * {@link Schedule}: a cycle shift, a shift or a consultation on a certain date
+ * 
+ * @author miggoncan
+ */
+@Data
+@AllArgsConstructor
+public class DoctorShift {
+	public enum Kind {
+		CYCLE_SHIFT, SHIFT, CONSULTATION
+	}
+
+	private LocalDate date;
+	private Kind kind;
+}
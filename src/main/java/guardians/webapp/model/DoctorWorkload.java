@@ -0,0 +1,40 @@
+package guardians.webapp.model;
+
+import lombok.Data;
+
+/**
+ * This class contains the shifts, cycle shifts and consultations assigned to a
+ * {@link Doctor} in the {@link Schedule}s of several months, together with the
+ * limits of their {@link ShiftConfiguration} for the same months
+ * 
+ * @author miggoncan
+ */
+@Data
+public class DoctorWorkload {
+	private Doctor doctor;
+	private int shifts;
+	private int cycleShifts;
+	private int consultations;
+	/**
+	 * The minimum and maximum number of shifts, and the number of consultations,
+	 * of the shift configuration of the doctor, multiplied by the number of
+	 * months. They are null if the doctor does not have a shift configuration
+	 */
+	private Integer minShifts;
+	private Integer maxShifts;
+	private Integer expectedConsultations;
+
+	/**
+	 * @return true if the doctor has less shifts than their minimum
+	 */
+	public boolean isBelowMinShifts() {
+		return minShifts != null && shifts < minShifts;
+	}
+
+	/**
+	 * @return true if the doctor has more shifts than their maximum
+	 */
+	public boolean isAboveMaxShifts() {
+		return maxShifts != null && shifts > maxShifts;
+	}
+}
@@ -0,0 +1,45 @@
+package guardians.webapp.model;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+/**
+ * This class deserializes the {@link Doctor}s of the days of a
+ * {@link Schedule}. The same doctor appears in many days, so only the first
+ * instance found with each id is kept, and the rest of appearances are replaced
+ * with it.
+ *
+ * The doctors are interned per deserialization, e.g. per schedule received
+ * from the REST service, so a schedule holds a single instance of each doctor.
+ *
+ * @author miggoncan
+ */
+class InterningDoctorDeserializer extends JsonDeserializer<Doctor> {
+	/**
+	 * The attribute of the deserialization where the interned doctors are kept
+	 */
+	private static final String INTERNED_DOCTORS = InterningDoctorDeserializer.class.getName();
+
+	@Override
+	public Doctor deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+		// This deserializer is only used for the doctors of the days, so the default
+		// one is used to read the doctor
+		Doctor doctor = ctxt.readValue(p, Doctor.class);
+		if (doctor == null || doctor.getId() == null) {
+			return doctor;
+		}
+		@SuppressWarnings("unchecked")
+		Map<Long, Doctor> internedDoctors = (Map<Long, Doctor>) ctxt.getAttribute(INTERNED_DOCTORS);
+		if (internedDoctors == null) {
+			internedDoctors = new HashMap<>();
+			ctxt.setAttribute(INTERNED_DOCTORS, internedDoctors);
+		}
+		Doctor internedDoctor = internedDoctors.putIfAbsent(doctor.getId(), doctor);
+		return internedDoctor == null ? doctor : internedDoctor;
+	}
+}
@@ -0,0 +1,148 @@
+package guardians.webapp.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * This class represents the calendar layout of a month: its days arranged in
+ * weeks from Monday to Sunday. The weeks are stored as a flat array of
+ * {@code weeks * 7} cells, where the day {@code d} of the month is found at the
+ * cell {@code offset + d - 1}.
+ *
+ * The cells before the first day and after the last day of the month contain
+ * the days of the previous and next months. As they do not belong to the
+ * schedule, they are filled with shared immutable {@link ScheduleDay}s that
+ * only contain the number of the day.
+ *
+ * The grid only depends on the month, so there is a single instance per month,
+ * obtained with {@link #of(YearMonth)}.
+ *
+ * @author miggoncan
+ */
+@Getter
+public class MonthGrid {
+	private static final int DAYS_PER_WEEK = 7;
+	/**
+	 * The filler days, indexed by the number of the day (index 0 is unused)
+	 */
+	private static final ScheduleDay[] FILLERS = new ScheduleDay[32];
+	private static final ConcurrentMap<YearMonth, MonthGrid> GRIDS = new ConcurrentHashMap<>();
+
+	static {
+		for (int day = 1; day < FILLERS.length; day++) {
+			FILLERS[day] = new FillerDay(day);
+		}
+	}
+
+	private final YearMonth yearMonth;
+	/**
+	 * The cell of the first day of the month. E.g. 2 if the month starts on a
+	 * Wednesday
+	 */
+	private final int offset;
+	private final int weeks;
+	/**
+	 * The cells of the grid, filled with the filler days. It is copied when days
+	 * are laid out
+	 */
+	@Getter(AccessLevel.NONE)
+	private final ScheduleDay[] fillerCells;
+
+	private MonthGrid(YearMonth yearMonth) {
+		this.yearMonth = yearMonth;
+		LocalDate firstDay = yearMonth.atDay(1);
+		this.offset = firstDay.getDayOfWeek().getValue() - 1;
+		int daysInMonth = yearMonth.lengthOfMonth();
+		this.weeks = (offset + daysInMonth + DAYS_PER_WEEK - 1) / DAYS_PER_WEEK;
+		this.fillerCells = new ScheduleDay[weeks * DAYS_PER_WEEK];
+		LocalDate gridStart = firstDay.minusDays(offset);
+		for (int cell = 0; cell < fillerCells.length; cell++) {
+			fillerCells[cell] = FILLERS[gridStart.plusDays(cell).getDayOfMonth()];
+		}
+	}
+
+	/**
+	 * @param yearMonth The month
+	 * @return The grid of the month
+	 */
+	public static MonthGrid of(YearMonth yearMonth) {
+		return GRIDS.computeIfAbsent(yearMonth, MonthGrid::new);
+	}
+
+	/**
+	 * @return The number of cells of the grid
+	 */
+	public int getCells() {
+		return fillerCells.length;
+	}
+
+	/**
+	 * @param day The number of a day of the month
+	 * @return The cell where the day is found
+	 */
+	public int cellOf(int day) {
+		return offset + day - 1;
+	}
+
+	/**
+	 * Place the days of a schedule in the cells of the grid. The cells of the days
+	 * not found in the given collection contain filler days
+	 *
+	 * @param days The days of the schedule
+	 * @return A new array with the content of each cell
+	 */
+	public ScheduleDay[] layout(Collection<ScheduleDay> days) {
+		ScheduleDay[] cells = fillerCells.clone();
+		int daysInMonth = yearMonth.lengthOfMonth();
+		for (ScheduleDay day : days) {
+			Integer dayNumber = day.getDay();
+			if (dayNumber != null && dayNumber >= 1 && dayNumber <= daysInMonth) {
+				cells[this.cellOf(dayNumber)] = day;
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * A day that does not belong to the schedule. It cannot be modified, as it is
+	 * shared by all the grids
+	 */
+	private static final class FillerDay extends ScheduleDay {
+		private FillerDay(int day) {
+			super.setDay(day);
+			super.setIsWorkingDay(false);
+		}
+
+		@Override
+		public void setDay(Integer day) {
+			throw new UnsupportedOperationException("Filler days cannot be modified");
+		}
+
+		@Override
+		public void setIsWorkingDay(Boolean isWorkingDay) {
+			throw new UnsupportedOperationException("Filler days cannot be modified");
+		}
+
+		@Override
+		public void setCycle(Set<Doctor> cycle) {
+			throw new UnsupportedOperationException("Filler days cannot be modified");
+		}
+
+		@Override
+		public void setShifts(Set<Doctor> shifts) {
+			throw new UnsupportedOperationException("Filler days cannot be modified");
+		}
+
+		@Override
+		public void setConsultations(Set<Doctor> consultations) {
+			throw new UnsupportedOperationException("Filler days cannot be modified");
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package guardians.webapp.model;
 
-import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 
@@ -35,14 +34,18 @@ public class Schedule {
 	/**
 	 * This attribute will not be serialized. Its main purpose is to provide the
 	 * thymeleaf templates an easy way of representing the schedule of a certain
-	 * month.
-	 * 
-	 * The outer list will contain as many elements as weeks has the month. The
-	 * inner lists will contain exactly seven Schedule days.
+	 * month, together with {@link #gridDays}.
+	 */
+	@JsonIgnore
+	private MonthGrid grid;
+	/**
+	 * This attribute will not be serialized. It contains the content of each cell
+	 * of the {@link #grid}, so the templates can index the days of each week
+	 * directly.
 	 * 
-	 * Note that scheduleDats not belongin to this month may need to be inserted if
-	 * the first day of this month is not a Monday
+	 * Note that the cells of the days not belonging to this month contain filler
+	 * days, which cannot be modified
 	 */
 	@JsonIgnore
-	private List<List<ScheduleDay>> weeks;
+	private ScheduleDay[] gridDays;
 }
@@ -4,6 +4,8 @@ import java.util.Set;
 
 import org.springframework.hateoas.server.core.Relation;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 import lombok.Data;
 
 /**
@@ -17,8 +19,13 @@ import lombok.Data;
 public class ScheduleDay implements Comparable<ScheduleDay> {
 	private Integer day;
 	private Boolean isWorkingDay;
+	// The doctors are interned, so each doctor is a single instance in the whole
+	// schedule
+	@JsonDeserialize(contentUsing = InterningDoctorDeserializer.class)
 	private Set<Doctor> cycle;
+	@JsonDeserialize(contentUsing = InterningDoctorDeserializer.class)
 	private Set<Doctor> shifts;
+	@JsonDeserialize(contentUsing = InterningDoctorDeserializer.class)
 	private Set<Doctor> consultations;
 
 	@Override
@@ -0,0 +1,196 @@
+package guardians.webapp.model;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is a compact representation of the assignments of a
+ * {@link Schedule}: a matrix of doctors by days for cycle shifts, shifts and
+ * consultations.
+ *
+ * A month has at most 31 days, so each row of the matrix (the days of a doctor)
+ * is stored as the bits of a long, where the bit {@code d - 1} corresponds to
+ * the day {@code d}. Checking whether a doctor has a shift on a day is a single
+ * bit test, and counting the shifts of a doctor is a single bit count.
+ *
+ * The doctors are indexed in the order they are first found in the schedule.
+ * The matrix is built once from a schedule with {@link #of(Schedule)}, and it
+ * does not change if the schedule changes afterwards.
+ *
+ * @author miggoncan
+ */
+public class ScheduleMatrix {
+	private final YearMonth yearMonth;
+	private final List<Doctor> doctors;
+	private final Map<Doctor, Integer> doctorIndexes;
+	/**
+	 * The days found in the schedule
+	 */
+	private final long days;
+	private final long workingDays;
+	private final long[] cycleShifts;
+	private final long[] shifts;
+	private final long[] consultations;
+
+	private ScheduleMatrix(YearMonth yearMonth, List<Doctor> doctors, Map<Doctor, Integer> doctorIndexes,
+			long days, long workingDays, long[] cycleShifts, long[] shifts, long[] consultations) {
+		this.yearMonth = yearMonth;
+		this.doctors = Collections.unmodifiableList(doctors);
+		this.doctorIndexes = doctorIndexes;
+		this.days = days;
+		this.workingDays = workingDays;
+		this.cycleShifts = cycleShifts;
+		this.shifts = shifts;
+		this.consultations = consultations;
+	}
+
+	/**
+	 * @param schedule The schedule. Its days may be null
+	 * @return The matrix of the assignments of the schedule
+	 */
+	public static ScheduleMatrix of(Schedule schedule) {
+		YearMonth yearMonth = YearMonth.of(schedule.getYear(), schedule.getMonth());
+		List<Doctor> doctors = new ArrayList<>();
+		Map<Doctor, Integer> doctorIndexes = new HashMap<>();
+		// The rows of the cycle shifts, shifts and consultations. They are grown as
+		// doctors are found
+		long[][] rows = new long[3][16];
+		long days = 0;
+		long workingDays = 0;
+		if (schedule.getDays() != null) {
+			for (ScheduleDay scheduleDay : schedule.getDays()) {
+				Integer day = scheduleDay.getDay();
+				if (day == null || day < 1 || day > yearMonth.lengthOfMonth()) {
+					continue;
+				}
+				long dayBit = bitOf(day);
+				days |= dayBit;
+				if (Boolean.TRUE.equals(scheduleDay.getIsWorkingDay())) {
+					workingDays |= dayBit;
+				}
+				set(rows, 0, scheduleDay.getCycle(), dayBit, doctors, doctorIndexes);
+				set(rows, 1, scheduleDay.getShifts(), dayBit, doctors, doctorIndexes);
+				set(rows, 2, scheduleDay.getConsultations(), dayBit, doctors, doctorIndexes);
+			}
+		}
+		int numDoctors = doctors.size();
+		return new ScheduleMatrix(yearMonth, doctors, doctorIndexes, days, workingDays,
+				Arrays.copyOf(rows[0], numDoctors), Arrays.copyOf(rows[1], numDoctors),
+				Arrays.copyOf(rows[2], numDoctors));
+	}
+
+	private static void set(long[][] rows, int kind, Set<Doctor> assigned, long dayBit, List<Doctor> doctors,
+			Map<Doctor, Integer> doctorIndexes) {
+		if (assigned == null) {
+			return;
+		}
+		for (Doctor doctor : assigned) {
+			Integer index = doctorIndexes.get(doctor);
+			if (index == null) {
+				index = doctors.size();
+				doctors.add(doctor);
+				doctorIndexes.put(doctor, index);
+				if (index >= rows[0].length) {
+					for (int i = 0; i < rows.length; i++) {
+						rows[i] = Arrays.copyOf(rows[i], rows[i].length * 2);
+					}
+				}
+			}
+			rows[kind][index] |= dayBit;
+		}
+	}
+
+	private static long bitOf(int day) {
+		return 1L << (day - 1);
+	}
+
+	public YearMonth getYearMonth() {
+		return yearMonth;
+	}
+
+	/**
+	 * @return The doctors found in the schedule, in the order of their indexes
+	 */
+	public List<Doctor> getDoctors() {
+		return doctors;
+	}
+
+	/**
+	 * @return The index of the doctor, or -1 if the doctor is not found in the
+	 *         schedule
+	 */
+	public int indexOf(Doctor doctor) {
+		Integer index = doctorIndexes.get(doctor);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return true if the day is found in the schedule
+	 */
+	public boolean hasDay(int day) {
+		return (days & bitOf(day)) != 0;
+	}
+
+	public boolean isWorkingDay(int day) {
+		return (workingDays & bitOf(day)) != 0;
+	}
+
+	public boolean hasCycleShift(int doctorIndex, int day) {
+		return (cycleShifts[doctorIndex] & bitOf(day)) != 0;
+	}
+
+	public boolean hasShift(int doctorIndex, int day) {
+		return (shifts[doctorIndex] & bitOf(day)) != 0;
+	}
+
+	public boolean hasConsultation(int doctorIndex, int day) {
+		return (consultations[doctorIndex] & bitOf(day)) != 0;
+	}
+
+	/**
+	 * @return The days with a cycle shift of the doctor, as the bits of a long.
+	 *         The bit {@code d - 1} corresponds to the day {@code d}
+	 */
+	public long getCycleShiftDays(int doctorIndex) {
+		return cycleShifts[doctorIndex];
+	}
+
+	/**
+	 * @see #getCycleShiftDays(int)
+	 */
+	public long getShiftDays(int doctorIndex) {
+		return shifts[doctorIndex];
+	}
+
+	/**
+	 * @see #getCycleShiftDays(int)
+	 */
+	public long getConsultationDays(int doctorIndex) {
+		return consultations[doctorIndex];
+	}
+
+	public int countCycleShifts(int doctorIndex) {
+		return Long.bitCount(cycleShifts[doctorIndex]);
+	}
+
+	public int countShifts(int doctorIndex) {
+		return Long.bitCount(shifts[doctorIndex]);
+	}
+
+	public int countConsultations(int doctorIndex) {
+		return Long.bitCount(consultations[doctorIndex]);
+	}
+
+	/**
+	 * @return The number of working days found in the schedule
+	 */
+	public int countWorkingDays() {
+		return Long.bitCount(workingDays);
+	}
+}
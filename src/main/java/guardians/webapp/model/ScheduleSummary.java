@@ -0,0 +1,24 @@
+package guardians.webapp.model;
+
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * This class contains the information of a {@link Schedule} shown in the list
+ * of schedules: its month, year and status. Unlike {@link Schedule}, it does
+ * not contain the days of the schedule
+ * 
+ * @author miggoncan
+ */
+@Data
+public class ScheduleSummary {
+	private Integer month;
+	private Integer year;
+	private String status;
+	/**
+	 * The links of this webapp related to the schedule. For example, the entry
+	 * with key "self" points to the page of the schedule
+	 */
+	private Map<String, String> links;
+}
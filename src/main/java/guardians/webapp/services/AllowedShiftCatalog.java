@@ -0,0 +1,133 @@
+package guardians.webapp.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import guardians.webapp.model.AllowedShift;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class keeps in memory all the {@link AllowedShift}s available at the
+ * REST service, as they are rarely modified.
+ *
+ * The catalog is requested the first time it is needed, and then refreshed
+ * periodically in the background. It can also be refreshed on demand through
+ * {@link #refresh()}.
+ *
+ * @author miggoncan
+ */
+@Service
+@Slf4j
+public class AllowedShiftCatalog {
+	@Autowired
+	private AllowedShiftService allowedShiftService;
+
+	/**
+	 * The current catalog. It will be null until it is requested for the first
+	 * time
+	 */
+	private volatile Catalog catalog;
+
+	/**
+	 * An immutable view of the allowed shifts, sorted and indexed by id
+	 */
+	private static class Catalog {
+		private final List<AllowedShift> allowedShifts;
+		private final Map<Integer, AllowedShift> allowedShiftsById;
+
+		public Catalog(CollectionModel<EntityModel<AllowedShift>> allowedShiftResources) {
+			List<AllowedShift> allowedShifts = new ArrayList<>();
+			Map<Integer, AllowedShift> allowedShiftsById = new HashMap<>();
+			for (EntityModel<AllowedShift> allowedShiftResource : allowedShiftResources) {
+				AllowedShift allowedShift = allowedShiftResource.getContent();
+				allowedShifts.add(allowedShift);
+				allowedShiftsById.put(allowedShift.getId(), allowedShift);
+			}
+			allowedShifts.sort(Comparator.comparingInt(AllowedShift::getId));
+			this.allowedShifts = Collections.unmodifiableList(allowedShifts);
+			this.allowedShiftsById = Collections.unmodifiableMap(allowedShiftsById);
+		}
+	}
+
+	/**
+	 * @return All the available allowed shifts, sorted by id. The list cannot be
+	 *         modified
+	 */
+	public List<AllowedShift> getAllowedShifts() {
+		return this.getCatalog().allowedShifts;
+	}
+
+	/**
+	 * Find an {@link AllowedShift} given its id.
+	 *
+	 * Note the catalog is not refreshed if the id is not found, as the ids come
+	 * from the requests of the users. The allowed shifts created after the last
+	 * refresh will be found after the next one, or after calling
+	 * {@link #refresh()}
+	 *
+	 * @param id The id of the allowed shift
+	 * @return The found allowed shift, or null if it is not in the catalog
+	 */
+	@Nullable
+	public AllowedShift getAllowedShift(Integer id) {
+		AllowedShift allowedShift = this.getCatalog().allowedShiftsById.get(id);
+		if (allowedShift == null) {
+			log.info("The allowed shift " + id + " is not in the catalog");
+		}
+		return allowedShift;
+	}
+
+	/**
+	 * Request again all the allowed shifts to the REST service
+	 */
+	public void refresh() {
+		log.info("Request to refresh the allowed shift catalog");
+		this.load();
+	}
+
+	@Scheduled(initialDelayString = "${guardians.allowed-shifts.refresh-interval}",
+			fixedDelayString = "${guardians.allowed-shifts.refresh-interval}")
+	public void refreshInBackground() {
+		if (this.catalog == null) {
+			log.debug("The allowed shift catalog has not been requested yet. Skipping background refresh");
+			return;
+		}
+		try {
+			this.refresh();
+		} catch (RestClientException e) {
+			log.warn("The allowed shift catalog could not be refreshed in the background: " + e);
+		}
+	}
+
+	private Catalog getCatalog() {
+		Catalog catalog = this.catalog;
+		if (catalog == null) {
+			synchronized (this) {
+				catalog = this.catalog;
+				if (catalog == null) {
+					catalog = this.load();
+				}
+			}
+		}
+		return catalog;
+	}
+
+	private synchronized Catalog load() {
+		Catalog catalog = new Catalog(allowedShiftService.getAllowedShifts());
+		log.debug("The allowed shifts in the catalog are: " + catalog.allowedShifts);
+		this.catalog = catalog;
+		return catalog;
+	}
+}
@@ -6,6 +6,7 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.client.Traverson;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 
 import guardians.webapp.model.AllowedShift;
@@ -22,6 +23,8 @@ import lombok.extern.slf4j.Slf4j;
 public class AllowedShiftService {
 	@Autowired
 	private Traverson traverson;
+	@Autowired
+	private UpstreamMetrics upstreamMetrics;
 	
 	@Value("${api.links.allowedshifts}")
 	private String allowedShiftsLink;
@@ -36,8 +39,8 @@ public class AllowedShiftService {
 		log.info("Request to get all allowed shift resources");
 		ParameterizedTypeReference<CollectionModel<EntityModel<AllowedShift>>> allowedShiftsTypeReference = 
 				new ParameterizedTypeReference<CollectionModel<EntityModel<AllowedShift>>>() {};
-		CollectionModel<EntityModel<AllowedShift>> allowedShiftResources = traverson.follow(allowedShiftsLink)
-				.toObject(allowedShiftsTypeReference);
+		CollectionModel<EntityModel<AllowedShift>> allowedShiftResources = upstreamMetrics.record(allowedShiftsLink,
+				HttpMethod.GET, () -> traverson.follow(allowedShiftsLink).toObject(allowedShiftsTypeReference));
 		log.info("The received resources are: " + allowedShiftResources);
 		return allowedShiftResources;
 	}
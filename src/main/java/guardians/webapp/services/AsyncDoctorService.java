@@ -0,0 +1,43 @@
+package guardians.webapp.services;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.stereotype.Service;
+
+import guardians.webapp.model.Doctor;
+import guardians.webapp.model.ShiftConfiguration;
+
+/**
+ * This class provides asynchronous versions of the methods of
+ * {@link DoctorService}. The requests are run by the {@link UpstreamExecutor},
+ * so independent requests can be sent at the same time.
+ *
+ * {@link UpstreamExecutor#join(CompletableFuture)} can be used to get the
+ * results, so that exceptions are thrown as they would be by the synchronous
+ * methods.
+ *
+ * @author miggoncan
+ */
+@Service
+public class AsyncDoctorService {
+	@Autowired
+	private DoctorService doctorService;
+	@Autowired
+	private UpstreamExecutor upstreamExecutor;
+
+	/**
+	 * @see DoctorService#getDoctor(Long)
+	 */
+	public CompletableFuture<EntityModel<Doctor>> getDoctor(Long doctorId) {
+		return upstreamExecutor.supply(() -> doctorService.getDoctor(doctorId));
+	}
+
+	/**
+	 * @see DoctorService#getShiftConfiguration(Long)
+	 */
+	public CompletableFuture<EntityModel<ShiftConfiguration>> getShiftConfiguration(Long doctorId) {
+		return upstreamExecutor.supply(() -> doctorService.getShiftConfiguration(doctorId));
+	}
+}
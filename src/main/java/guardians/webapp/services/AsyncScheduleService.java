@@ -0,0 +1,37 @@
+package guardians.webapp.services;
+
+import java.time.YearMonth;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.stereotype.Service;
+
+import guardians.webapp.model.Schedule;
+
+/**
+ * This class provides asynchronous versions of the methods of
+ * {@link ScheduleService}. The requests are run by the
+ * {@link UpstreamExecutor}, so the schedules of several months can be
+ * requested at the same time.
+ *
+ * {@link UpstreamExecutor#join(CompletableFuture)} can be used to get the
+ * results, so that exceptions are thrown as they would be by the synchronous
+ * methods.
+ *
+ * @author miggoncan
+ */
+@Service
+public class AsyncScheduleService {
+	@Autowired
+	private ScheduleService scheduleService;
+	@Autowired
+	private UpstreamExecutor upstreamExecutor;
+
+	/**
+	 * @see ScheduleService#getSchedule(YearMonth)
+	 */
+	public CompletableFuture<EntityModel<Schedule>> getSchedule(YearMonth yearMonth) {
+		return upstreamExecutor.supply(() -> scheduleService.getSchedule(yearMonth));
+	}
+}
@@ -0,0 +1,125 @@
+package guardians.webapp.services;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.lang.Nullable;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import guardians.webapp.services.ConditionalGetCache.StoredResponse;
+
+/**
+ * This converter decorates the one that decodes the HAL responses of the REST
+ * service. When a response kept by the {@link ConditionalGetCache} is read
+ * (see {@link ConditionalGetInterceptor}), the JSON tree parsed from its body
+ * is kept by the cache too. The next times the same version of the response is
+ * read, the objects are created from the kept tree, instead of parsing the
+ * body again.
+ *
+ * Note a new object is created on every read, so callers never share the
+ * objects they receive. Only the tree, which is never modified, is shared.
+ * This means that only the parsing of the body (reading its bytes and
+ * tokenizing them) is skipped, while the data binding of the objects is done
+ * on every read. In exchange, the trees use more memory than the bodies they
+ * are parsed from, so they are bounded separately (see
+ * {@link ConditionalGetCache}). HalDecodingBenchmark compares both ways of
+ * decoding a schedule.
+ *
+ * @author miggoncan
+ */
+public class CachingHalMessageConverter implements GenericHttpMessageConverter<Object> {
+	private final AbstractJackson2HttpMessageConverter delegate;
+	private final ConditionalGetCache conditionalGetCache;
+
+	public CachingHalMessageConverter(AbstractJackson2HttpMessageConverter delegate,
+			ConditionalGetCache conditionalGetCache) {
+		this.delegate = delegate;
+		this.conditionalGetCache = conditionalGetCache;
+	}
+
+	@Override
+	public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
+		return delegate.canRead(clazz, mediaType);
+	}
+
+	@Override
+	public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+		return delegate.canRead(type, contextClass, mediaType);
+	}
+
+	@Override
+	public boolean canWrite(Class<?> clazz, @Nullable MediaType mediaType) {
+		return delegate.canWrite(clazz, mediaType);
+	}
+
+	@Override
+	public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+		return delegate.canWrite(type, clazz, mediaType);
+	}
+
+	@Override
+	public List<MediaType> getSupportedMediaTypes() {
+		return delegate.getSupportedMediaTypes();
+	}
+
+	@Override
+	public Object read(Class<? extends Object> clazz, HttpInputMessage inputMessage)
+			throws IOException, HttpMessageNotReadableException {
+		return this.read(clazz, null, inputMessage);
+	}
+
+	@Override
+	public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage)
+			throws IOException, HttpMessageNotReadableException {
+		String key = inputMessage.getHeaders().getFirst(ConditionalGetInterceptor.KEY_HEADER);
+		String id = inputMessage.getHeaders().getFirst(ConditionalGetInterceptor.ID_HEADER);
+		StoredResponse stored = key == null || id == null ? null : conditionalGetCache.getInMemory(key, id);
+		if (stored == null) {
+			return delegate.read(type, contextClass, inputMessage);
+		}
+		ObjectMapper objectMapper = delegate.getObjectMapper();
+		try {
+			JsonNode tree = conditionalGetCache.getTree(id);
+			if (tree == null) {
+				tree = objectMapper.readTree(stored.getBody());
+				if (tree == null || tree.isMissingNode()) {
+					// The body is empty
+					return delegate.read(type, contextClass, inputMessage);
+				}
+				conditionalGetCache.putTree(id, tree);
+			} else {
+				conditionalGetCache.countParseSkipped();
+			}
+			JavaType javaType = objectMapper.constructType(GenericTypeResolver.resolveType(type, contextClass));
+			return objectMapper.readerFor(javaType).readValue(tree);
+		} catch (JsonProcessingException e) {
+			throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e,
+					inputMessage);
+		}
+	}
+
+	@Override
+	public void write(Object t, @Nullable MediaType contentType, HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		delegate.write(t, contentType, outputMessage);
+	}
+
+	@Override
+	public void write(Object t, @Nullable Type type, @Nullable MediaType contentType,
+			HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		delegate.write(t, type, contentType, outputMessage);
+	}
+}
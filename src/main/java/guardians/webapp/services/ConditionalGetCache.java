@@ -0,0 +1,375 @@
+package guardians.webapp.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class keeps the responses of the REST service that contain validators
+ * (an ETag or a Last-Modified header), so they can be revalidated with
+ * conditional requests instead of being downloaded again. See
+ * {@link ConditionalGetInterceptor}.
+ *
+ * The responses are indexed by their URI and the media types accepted by the
+ * request. They are kept in memory, bounded by the number of bytes of their
+ * bodies. If a directory is configured, the responses evicted from memory are
+ * written to it, bounded by its own number of bytes, and moved back to memory
+ * when they are requested again.
+ *
+ * The JSON trees parsed from the bodies kept in memory (see
+ * {@link CachingHalMessageConverter}) are kept in another cache, indexed by
+ * the version of the response, and bounded by an estimate of the bytes they
+ * use (see {@link #estimateSize(JsonNode)}). A tree is discarded when its
+ * response leaves memory.
+ *
+ * The hits and misses of the memory cache and of the trees are published with
+ * the names "restResponses" and "restResponseTrees". The requests sent without
+ * validators, the conditional requests, the ones answered with a 304 (Not
+ * Modified) and the bodies that were not parsed again (their objects are still
+ * bound from the tree) are counted as "guardians.rest.cache.misses",
+ * "guardians.rest.cache.revalidations", "guardians.rest.cache.hits" and
+ * "guardians.rest.cache.parses-skipped".
+ *
+ * @author miggoncan
+ */
+@Component
+@Slf4j
+public class ConditionalGetCache {
+	private static final String ENTRY_SUFFIX = ".entry";
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${guardians.rest.cache.max-bytes}")
+	private Long maxBytes;
+	@Value("${guardians.rest.cache.disk-dir}")
+	private String diskDir;
+	@Value("${guardians.rest.cache.disk-max-bytes}")
+	private Long diskMaxBytes;
+	@Value("${guardians.rest.cache.tree-max-bytes}")
+	private Long treeMaxBytes;
+
+	private Cache<String, StoredResponse> memory;
+	/**
+	 * The trees parsed from the bodies in memory, indexed by the id of the version
+	 * of the response
+	 */
+	private Cache<String, JsonNode> trees;
+	/**
+	 * The size of the files of the responses kept in the directory, indexed by the
+	 * key of the response. It is null if no directory is configured
+	 */
+	private Cache<String, Long> disk;
+	private Path directory;
+
+	private Counter misses;
+	private Counter revalidations;
+	private Counter hits;
+	private Counter parsesSkipped;
+
+	/**
+	 * A response of the REST service, reduced to what is needed to revalidate it
+	 * and to answer a request with it
+	 */
+	@Getter
+	public static class StoredResponse {
+		/**
+		 * Identifies this version of the response, so a parsed tree is never mixed
+		 * with other versions
+		 */
+		private final String id = UUID.randomUUID().toString();
+		@Nullable
+		private final String eTag;
+		@Nullable
+		private final String lastModified;
+		@Nullable
+		private final String contentType;
+		private final byte[] body;
+
+		public StoredResponse(@Nullable String eTag, @Nullable String lastModified, @Nullable String contentType,
+				byte[] body) {
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+			this.contentType = contentType;
+			this.body = body;
+		}
+	}
+
+	@PostConstruct
+	public void init() throws IOException {
+		if (diskDir != null && !diskDir.trim().isEmpty()) {
+			directory = Paths.get(diskDir.trim());
+			Files.createDirectories(directory);
+			// The entries left by a previous run are not indexed
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+				for (Path entry : entries) {
+					Files.deleteIfExists(entry);
+				}
+			}
+			disk = Caffeine.newBuilder()
+					.maximumWeight(diskMaxBytes)
+					.weigher((String key, Long size) -> (int) Math.min(size, Integer.MAX_VALUE))
+					.removalListener((String key, Long size, RemovalCause cause) -> {
+						// When replaced, the file already contains the new response
+						if (cause != RemovalCause.REPLACED) {
+							this.deleteFile(key);
+						}
+					})
+					.build();
+			log.info("The responses of the REST service evicted from memory will be kept in " + directory);
+		}
+		trees = Caffeine.newBuilder()
+				.maximumWeight(treeMaxBytes)
+				.weigher((String id, JsonNode tree) -> (int) Math.min(estimateSize(tree), Integer.MAX_VALUE))
+				.recordStats()
+				.build();
+		memory = Caffeine.newBuilder()
+				.maximumWeight(maxBytes)
+				.weigher((String key, StoredResponse value) -> value.getBody().length)
+				.removalListener((String key, StoredResponse value, RemovalCause cause) -> {
+					// The tree can no longer be requested, as it is only used with the
+					// version in memory
+					trees.invalidate(value.getId());
+					if (cause == RemovalCause.SIZE && disk != null) {
+						this.writeToDisk(key, value);
+					}
+				})
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, memory, "restResponses");
+		CaffeineCacheMetrics.monitor(meterRegistry, trees, "restResponseTrees");
+		misses = Counter.builder("guardians.rest.cache.misses")
+				.description("Requests to the REST service sent without validators")
+				.register(meterRegistry);
+		revalidations = Counter.builder("guardians.rest.cache.revalidations")
+				.description("Conditional requests sent to the REST service")
+				.register(meterRegistry);
+		hits = Counter.builder("guardians.rest.cache.hits")
+				.description("Conditional requests answered with a 304 (Not Modified)")
+				.register(meterRegistry);
+		parsesSkipped = Counter.builder("guardians.rest.cache.parses-skipped")
+				.description("Responses whose body was not parsed again")
+				.register(meterRegistry);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (disk != null) {
+			log.info("Deleting the responses of the REST service kept in " + directory);
+			disk.invalidateAll();
+			disk.cleanUp();
+		}
+	}
+
+	/**
+	 * @return The key a response to the request is kept with
+	 */
+	public String keyOf(HttpRequest request) {
+		List<String> accept = request.getHeaders().get(HttpHeaders.ACCEPT);
+		return request.getURI() + "|" + (accept == null ? "" : String.join(",", accept));
+	}
+
+	/**
+	 * @param key The key of the response. See {@link #keyOf(HttpRequest)}
+	 * @return The kept response, or null. If it was kept in the directory, it is
+	 *         moved back to memory
+	 */
+	@Nullable
+	public StoredResponse get(String key) {
+		StoredResponse stored = memory.getIfPresent(key);
+		if (stored == null && disk != null && disk.getIfPresent(key) != null) {
+			stored = this.readFromDisk(key);
+			disk.invalidate(key);
+			if (stored != null) {
+				memory.put(key, stored);
+			}
+		}
+		return stored;
+	}
+
+	/**
+	 * @param key The key of the response. See {@link #keyOf(HttpRequest)}
+	 * @param id  The id of the version of the response
+	 * @return The response, only if that version is in memory
+	 */
+	@Nullable
+	public StoredResponse getInMemory(String key, String id) {
+		StoredResponse stored = memory.getIfPresent(key);
+		return stored != null && stored.getId().equals(id) ? stored : null;
+	}
+
+	/**
+	 * @param id The id of the version of the response
+	 * @return The tree parsed from the body of the response, or null
+	 */
+	@Nullable
+	public JsonNode getTree(String id) {
+		return trees.getIfPresent(id);
+	}
+
+	/**
+	 * Keep the tree parsed from the body of a response in memory
+	 *
+	 * @param id   The id of the version of the response
+	 * @param tree The parsed tree. It must not be modified afterwards
+	 */
+	public void putTree(String id, JsonNode tree) {
+		trees.put(id, tree);
+	}
+
+	public void put(String key, StoredResponse stored) {
+		memory.put(key, stored);
+		if (disk != null) {
+			disk.invalidate(key);
+		}
+	}
+
+	/**
+	 * Stop keeping the responses of a URI, whatever media types they were
+	 * requested with
+	 */
+	public void invalidate(URI uri) {
+		String prefix = uri + "|";
+		memory.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+		if (disk != null) {
+			disk.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+		}
+	}
+
+	public void countMiss() {
+		misses.increment();
+	}
+
+	public void countRevalidation() {
+		revalidations.increment();
+	}
+
+	public void countHit() {
+		hits.increment();
+	}
+
+	public void countParseSkipped() {
+		parsesSkipped.increment();
+	}
+
+	/**
+	 * Estimate the bytes used by a tree in a 64-bit JVM with compressed
+	 * references. Only the nodes and the strings are taken into account, so it is
+	 * a rough estimate
+	 */
+	static long estimateSize(JsonNode tree) {
+		long size = 0;
+		Deque<JsonNode> pending = new ArrayDeque<>();
+		pending.push(tree);
+		while (!pending.isEmpty()) {
+			JsonNode node = pending.pop();
+			if (node.isObject()) {
+				// The node and its LinkedHashMap, plus an entry and a key per field
+				size += 16 + 56;
+				Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+				while (fields.hasNext()) {
+					Map.Entry<String, JsonNode> field = fields.next();
+					size += 40 + stringSize(field.getKey());
+					pending.push(field.getValue());
+				}
+			} else if (node.isArray()) {
+				// The node and its ArrayList, plus a reference per element
+				size += 16 + 24 + 4L * node.size();
+				for (JsonNode element : node) {
+					pending.push(element);
+				}
+			} else if (node.isTextual()) {
+				size += 16 + stringSize(node.textValue());
+			} else if (node.isNumber()) {
+				size += 24;
+			}
+			// Booleans and nulls are shared instances
+		}
+		return size;
+	}
+
+	private static long stringSize(String string) {
+		// The String and its char array
+		return 24 + 16 + 2L * string.length();
+	}
+
+	private Path fileOf(String key) {
+		return directory.resolve(DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + ENTRY_SUFFIX);
+	}
+
+	private void writeToDisk(String key, StoredResponse stored) {
+		Path file = this.fileOf(key);
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			output.writeUTF(stored.getETag() == null ? "" : stored.getETag());
+			output.writeUTF(stored.getLastModified() == null ? "" : stored.getLastModified());
+			output.writeUTF(stored.getContentType() == null ? "" : stored.getContentType());
+			output.writeInt(stored.getBody().length);
+			output.write(stored.getBody());
+		} catch (IOException e) {
+			log.warn("The response " + key + " could not be written to " + file + ": " + e);
+			return;
+		}
+		disk.put(key, (long) stored.getBody().length);
+	}
+
+	@Nullable
+	private StoredResponse readFromDisk(String key) {
+		Path file = this.fileOf(key);
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			String eTag = input.readUTF();
+			String lastModified = input.readUTF();
+			String contentType = input.readUTF();
+			byte[] body = new byte[input.readInt()];
+			input.readFully(body);
+			return new StoredResponse(eTag.isEmpty() ? null : eTag, lastModified.isEmpty() ? null : lastModified,
+					contentType.isEmpty() ? null : contentType, body);
+		} catch (IOException e) {
+			log.warn("The response " + key + " could not be read from " + file + ": " + e);
+			return null;
+		}
+	}
+
+	private void deleteFile(String key) {
+		try {
+			Files.deleteIfExists(this.fileOf(key));
+		} catch (IOException e) {
+			log.warn("The response " + key + " could not be deleted: " + e);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package guardians.webapp.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import guardians.webapp.services.ConditionalGetCache.StoredResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This interceptor revalidates the GET requests to the REST service whose
+ * responses are kept by the {@link ConditionalGetCache}, sending their
+ * validators in the If-None-Match and If-Modified-Since headers. When the REST
+ * service answers with a 304 (Not Modified), the kept response is returned
+ * instead, so its body is not downloaded again.
+ *
+ * Successful responses with an ETag or a Last-Modified header are kept, unless
+ * they contain "Cache-Control: no-store". Any other request to a URI stops
+ * keeping its responses. The kept responses are always revalidated, so they
+ * are never used without asking the REST service.
+ *
+ * The returned responses identify the version of the kept response with the
+ * {@link #KEY_HEADER} and {@link #ID_HEADER} headers, so that the
+ * {@link CachingHalMessageConverter} can reuse the tree parsed from it.
+ *
+ * @author miggoncan
+ */
+@Slf4j
+public class ConditionalGetInterceptor implements ClientHttpRequestInterceptor {
+	public static final String KEY_HEADER = "X-Guardians-Cache-Key";
+	public static final String ID_HEADER = "X-Guardians-Cache-Id";
+
+	private final ConditionalGetCache conditionalGetCache;
+
+	public ConditionalGetInterceptor(ConditionalGetCache conditionalGetCache) {
+		this.conditionalGetCache = conditionalGetCache;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		if (request.getMethod() != HttpMethod.GET) {
+			ClientHttpResponse response = execution.execute(request, body);
+			conditionalGetCache.invalidate(request.getURI());
+			return response;
+		}
+
+		String key = conditionalGetCache.keyOf(request);
+		StoredResponse stored = conditionalGetCache.get(key);
+		if (stored == null) {
+			conditionalGetCache.countMiss();
+		} else {
+			log.debug("Revalidating the kept response of " + key);
+			conditionalGetCache.countRevalidation();
+			if (stored.getETag() != null) {
+				request.getHeaders().set(HttpHeaders.IF_NONE_MATCH, stored.getETag());
+			}
+			if (stored.getLastModified() != null) {
+				request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, stored.getLastModified());
+			}
+		}
+
+		ClientHttpResponse response = execution.execute(request, body);
+		int status = response.getRawStatusCode();
+		if (stored != null && status == HttpStatus.NOT_MODIFIED.value()) {
+			log.debug("The kept response of " + key + " has not been modified");
+			HttpHeaders notModifiedHeaders = response.getHeaders();
+			response.close();
+			conditionalGetCache.countHit();
+			return new StoredClientHttpResponse(key, stored, notModifiedHeaders);
+		}
+		HttpHeaders headers = response.getHeaders();
+		String eTag = headers.getETag();
+		String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+		if (status != HttpStatus.OK.value() || (eTag == null && lastModified == null) || isNoStore(headers)) {
+			return response;
+		}
+		byte[] responseBody;
+		try {
+			responseBody = StreamUtils.copyToByteArray(response.getBody());
+		} finally {
+			response.close();
+		}
+		String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+		StoredResponse newStored = new StoredResponse(eTag, lastModified, contentType, responseBody);
+		log.debug("Keeping the response of " + key + " with ETag " + eTag + " and Last-Modified " + lastModified);
+		conditionalGetCache.put(key, newStored);
+		return new StoredClientHttpResponse(key, newStored, headers);
+	}
+
+	private static boolean isNoStore(HttpHeaders headers) {
+		String cacheControl = headers.getCacheControl();
+		return cacheControl != null && cacheControl.toLowerCase().contains(CacheControl.noStore().getHeaderValue());
+	}
+
+	/**
+	 * A successful response whose body is the one of a {@link StoredResponse}. The
+	 * rest of the headers received (e.g. the cookies) are kept
+	 */
+	private static class StoredClientHttpResponse implements ClientHttpResponse {
+		private final byte[] body;
+		private final HttpHeaders headers;
+
+		public StoredClientHttpResponse(String key, StoredResponse stored, HttpHeaders receivedHeaders) {
+			this.body = stored.getBody();
+			this.headers = new HttpHeaders();
+			this.headers.putAll(receivedHeaders);
+			this.headers.remove(HttpHeaders.TRANSFER_ENCODING);
+			if (stored.getContentType() != null) {
+				this.headers.set(HttpHeaders.CONTENT_TYPE, stored.getContentType());
+			}
+			if (stored.getETag() != null) {
+				this.headers.set(HttpHeaders.ETAG, stored.getETag());
+			}
+			if (stored.getLastModified() != null) {
+				this.headers.set(HttpHeaders.LAST_MODIFIED, stored.getLastModified());
+			}
+			this.headers.setContentLength(this.body.length);
+			this.headers.set(KEY_HEADER, key);
+			this.headers.set(ID_HEADER, stored.getId());
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			return new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return HttpStatus.OK;
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return HttpStatus.OK.value();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return HttpStatus.OK.getReasonPhrase();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package guardians.webapp.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import guardians.webapp.model.Doctor;
+import guardians.webapp.model.ShiftConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class keeps in memory the {@link Doctor} resources and their
+ * {@link ShiftConfiguration}s received from the REST service.
+ *
+ * The doctors are kept both individually, indexed by id, and as the full list
+ * of doctors. When a doctor is persisted, both of them are updated with the
+ * persisted resource.
+ *
+ * The hits and misses of the caches are published with the names "doctors",
+ * "doctorList" and "shiftConfigurations".
+ *
+ * @author miggoncan
+ */
+@Component
+@Slf4j
+public class DoctorCache {
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${guardians.cache.doctors.ttl}")
+	private Long ttl;
+	@Value("${guardians.cache.doctors.max-size}")
+	private Long maxSize;
+
+	/**
+	 * The key of the only entry of doctorList
+	 */
+	private static final String DOCTOR_LIST_KEY = "doctors";
+
+	private Cache<Long, EntityModel<Doctor>> doctors;
+	private Cache<String, CollectionModel<EntityModel<Doctor>>> doctorList;
+	private Cache<Long, EntityModel<ShiftConfiguration>> shiftConfigurations;
+
+	@PostConstruct
+	public void init() {
+		doctors = Caffeine.newBuilder()
+				.expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+				.maximumSize(maxSize)
+				.recordStats()
+				.build();
+		doctorList = Caffeine.newBuilder()
+				.expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+				.maximumSize(1)
+				.recordStats()
+				.build();
+		shiftConfigurations = Caffeine.newBuilder()
+				.expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+				.maximumSize(maxSize)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, doctors, "doctors");
+		CaffeineCacheMetrics.monitor(meterRegistry, doctorList, "doctorList");
+		CaffeineCacheMetrics.monitor(meterRegistry, shiftConfigurations, "shiftConfigurations");
+	}
+
+	/**
+	 * @return The list of all the doctors, or null if it is not cached
+	 */
+	@Nullable
+	public CollectionModel<EntityModel<Doctor>> getDoctors() {
+		return doctorList.getIfPresent(DOCTOR_LIST_KEY);
+	}
+
+	/**
+	 * Keep the list of all the doctors. Each of the doctors will also be kept
+	 * individually
+	 */
+	public void putDoctors(CollectionModel<EntityModel<Doctor>> doctorResources) {
+		log.debug("Caching the list of doctors");
+		for (EntityModel<Doctor> doctorResource : doctorResources) {
+			doctors.put(doctorResource.getContent().getId(), doctorResource);
+		}
+		doctorList.put(DOCTOR_LIST_KEY, doctorResources);
+	}
+
+	/**
+	 * @param doctorId The id of the doctor
+	 * @return The doctor, or null if it is not cached
+	 */
+	@Nullable
+	public EntityModel<Doctor> getDoctor(Long doctorId) {
+		return doctors.getIfPresent(doctorId);
+	}
+
+	/**
+	 * Keep a doctor. If the list of all doctors is cached, the doctor will be
+	 * replaced in (or added to) it
+	 */
+	public void putDoctor(EntityModel<Doctor> doctorResource) {
+		Long doctorId = doctorResource.getContent().getId();
+		log.debug("Caching the doctor " + doctorId);
+		doctors.put(doctorId, doctorResource);
+		CollectionModel<EntityModel<Doctor>> doctorResources = doctorList.getIfPresent(DOCTOR_LIST_KEY);
+		if (doctorResources != null) {
+			// The cached list may be in use by other requests, so a new one is created
+			List<EntityModel<Doctor>> updatedDoctorResources = new ArrayList<>();
+			boolean replaced = false;
+			for (EntityModel<Doctor> cachedDoctorResource : doctorResources) {
+				if (doctorId.equals(cachedDoctorResource.getContent().getId())) {
+					updatedDoctorResources.add(doctorResource);
+					replaced = true;
+				} else {
+					updatedDoctorResources.add(cachedDoctorResource);
+				}
+			}
+			if (!replaced) {
+				updatedDoctorResources.add(doctorResource);
+			}
+			doctorList.put(DOCTOR_LIST_KEY,
+					CollectionModel.of(updatedDoctorResources, doctorResources.getLinks()));
+		}
+	}
+
+	/**
+	 * @param doctorId The id of the doctor the shift configuration belongs to
+	 * @return The shift configuration, or null if it is not cached
+	 */
+	@Nullable
+	public EntityModel<ShiftConfiguration> getShiftConfiguration(Long doctorId) {
+		return shiftConfigurations.getIfPresent(doctorId);
+	}
+
+	public void putShiftConfiguration(EntityModel<ShiftConfiguration> shiftConfigResource) {
+		Long doctorId = shiftConfigResource.getContent().getDoctorId();
+		log.debug("Caching the shift configuration of doctor " + doctorId);
+		shiftConfigurations.put(doctorId, shiftConfigResource);
+	}
+}
@@ -6,13 +6,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.Links;
 import org.springframework.hateoas.client.Hop;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -20,7 +20,6 @@ import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException.NotFound;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
 import guardians.webapp.model.Doctor;
 import guardians.webapp.model.ShiftConfiguration;
@@ -35,19 +34,31 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 @Slf4j
 public class DoctorService extends MyService {
+	@Autowired
+	private DoctorCache doctorCache;
 	
 	/**
 	 * @return All the {@link Doctor} resources available at the REST service
 	 */
 	public CollectionModel<EntityModel<Doctor>> getDoctors() {
 		log.info("Request to get all doctor resources");
-		ParameterizedTypeReference<CollectionModel<EntityModel<Doctor>>> doctorTypeReference = 
-				new ParameterizedTypeReference<CollectionModel<EntityModel<Doctor>>>() {};
-		CollectionModel<EntityModel<Doctor>> doctorResources = traverson
-				.follow(doctorsLink)
-				.toObject(doctorTypeReference);
-		log.info("The received resources are: " + doctorResources);
-		return doctorResources;
+		CollectionModel<EntityModel<Doctor>> doctorResources = doctorCache.getDoctors();
+		if (doctorResources != null) {
+			log.debug("The doctor resources were cached");
+			return doctorResources;
+		}
+		// Concurrent requests share the same response
+		return singleFlight.execute(doctorsLink, () -> {
+			ParameterizedTypeReference<CollectionModel<EntityModel<Doctor>>> doctorTypeReference = 
+					new ParameterizedTypeReference<CollectionModel<EntityModel<Doctor>>>() {};
+			CollectionModel<EntityModel<Doctor>> receivedResources = upstreamMetrics.record(doctorsLink,
+					HttpMethod.GET, () -> traverson
+						.follow(doctorsLink)
+						.toObject(doctorTypeReference));
+			log.info("The received resources are: " + receivedResources);
+			doctorCache.putDoctors(receivedResources);
+			return receivedResources;
+		});
 	}
 	
 	/**
@@ -74,19 +85,28 @@ public class DoctorService extends MyService {
 	 */
 	public EntityModel<Doctor> getDoctor(Long doctorId) {
 		log.info("Request to get doctor " + doctorId);
-		ParameterizedTypeReference<EntityModel<Doctor>> doctorTypeReference = 
-				new ParameterizedTypeReference<EntityModel<Doctor>>() {};
-		EntityModel<Doctor> doctorEntity;
-		try {
-			doctorEntity = traverson
-					.follow(Hop.rel(doctorLink).withParameter("doctorId", doctorId))
-					.toObject(doctorTypeReference);
-		} catch (NotFound e) {
-			log.info("The doctor was not found");
-			throw e;
+		EntityModel<Doctor> doctorEntity = doctorCache.getDoctor(doctorId);
+		if (doctorEntity != null) {
+			log.debug("The doctor was cached");
+			return doctorEntity;
 		}
-		log.info("The received resource is: " + doctorEntity);
-		return doctorEntity;
+		// Concurrent requests for the same doctor share the same response
+		return singleFlight.execute(doctorLink, () -> {
+			ParameterizedTypeReference<EntityModel<Doctor>> doctorTypeReference = 
+					new ParameterizedTypeReference<EntityModel<Doctor>>() {};
+			EntityModel<Doctor> receivedEntity;
+			try {
+				receivedEntity = upstreamMetrics.record(doctorLink, HttpMethod.GET, () -> traverson
+						.follow(Hop.rel(doctorLink).withParameter("doctorId", doctorId))
+						.toObject(doctorTypeReference));
+			} catch (NotFound e) {
+				log.info("The doctor was not found");
+				throw e;
+			}
+			log.info("The received resource is: " + receivedEntity);
+			doctorCache.putDoctor(receivedEntity);
+			return receivedEntity;
+		}, doctorId);
 	}
 
 	/**
@@ -97,20 +117,29 @@ public class DoctorService extends MyService {
 	 */
 	public EntityModel<ShiftConfiguration> getShiftConfiguration(Long doctorId) {
 		log.info("Request to get shift configuration of doctor " + doctorId);
-		ParameterizedTypeReference<EntityModel<ShiftConfiguration>> shiftContTypeReference = 
-				new ParameterizedTypeReference<EntityModel<ShiftConfiguration>>() {};
-		EntityModel<ShiftConfiguration> shiftConfigEntity;
-		try {
-			shiftConfigEntity = traverson
-					.follow(Hop.rel(shiftConfLink).withParameter("doctorId", doctorId))
-					.toObject(shiftContTypeReference);
-			log.info("The received resource is: " + shiftConfigEntity);
-		} catch (NotFound e) {
-			log.info("The shift config was not found");
-			shiftConfigEntity = null;
+		EntityModel<ShiftConfiguration> shiftConfigEntity = doctorCache.getShiftConfiguration(doctorId);
+		if (shiftConfigEntity != null) {
+			log.debug("The shift configuration was cached");
+			return shiftConfigEntity;
 		}
-		log.info("The received shift configuration is: " + shiftConfigEntity);
-		return shiftConfigEntity;
+		// Concurrent requests for the same shift configuration share the same response
+		return singleFlight.execute(shiftConfLink, () -> {
+			ParameterizedTypeReference<EntityModel<ShiftConfiguration>> shiftContTypeReference = 
+					new ParameterizedTypeReference<EntityModel<ShiftConfiguration>>() {};
+			EntityModel<ShiftConfiguration> receivedEntity;
+			try {
+				receivedEntity = upstreamMetrics.record(shiftConfLink, HttpMethod.GET, () -> traverson
+						.follow(Hop.rel(shiftConfLink).withParameter("doctorId", doctorId))
+						.toObject(shiftContTypeReference));
+				log.info("The received resource is: " + receivedEntity);
+				doctorCache.putShiftConfiguration(receivedEntity);
+			} catch (NotFound e) {
+				log.info("The shift config was not found");
+				receivedEntity = null;
+			}
+			log.info("The received shift configuration is: " + receivedEntity);
+			return receivedEntity;
+		}, doctorId);
 	}
 
 	/**
@@ -127,34 +156,39 @@ public class DoctorService extends MyService {
 		// First, we need to know the link and method to persist the doctor
 		Link linkToSaveDoctor = null;
 		HttpMethod methodToSaveDoctor = null;
+		String relToSaveDoctor = null;
 		if (doctor.getId() == null) {
 			// This map will contain the startDate parameter to create the link
 			Map<String, LocalDate> params = new HashMap<>();
 			params.put("startDate", startDate);
 			linkToSaveDoctor = this.getRootRequiredLinks(newDoctorLink).get(0).expand(params);
 			methodToSaveDoctor = HttpMethod.POST;
+			relToSaveDoctor = newDoctorLink;
 		} else {
 			// This map will contain the doctorId parameter to create the link
 			Map<String, Long> params = new HashMap<>();
 			params.put("doctorId", doctor.getId());
 			linkToSaveDoctor = this.getRootRequiredLinks(doctorLink).get(0).expand(params);
 			methodToSaveDoctor = HttpMethod.PUT;
+			relToSaveDoctor = doctorLink;
 		}
 		log.debug("The link to create a doctor is: " + linkToSaveDoctor);
 
 		// Persist the doctor
-		RestTemplate restTemplate = restTemplateBuilder.build();
-		HttpEntity<Doctor> req = new HttpEntity<Doctor>(doctor, this.getSessionHeaders());
-		ResponseEntity<Doctor> responseDoctor = restTemplate.exchange(linkToSaveDoctor.toUri(), 
-				methodToSaveDoctor, req, Doctor.class);
+		// The response is decoded along with its links so that it can be cached
+		ParameterizedTypeReference<EntityModel<Doctor>> doctorTypeReference = 
+				new ParameterizedTypeReference<EntityModel<Doctor>>() {};
+		ResponseEntity<EntityModel<Doctor>> responseDoctor = this.exchangeInSession(relToSaveDoctor,
+				linkToSaveDoctor.toUri(), methodToSaveDoctor, doctor, doctorTypeReference);
 		log.debug("The response doctor is: " + responseDoctor);
 		Doctor persistedDoctor;
 		if (responseDoctor.getStatusCode() != HttpStatus.OK) {
 			log.error("Unexpected http response: " + responseDoctor + ". Returning null");
 			persistedDoctor = null;
 		} else {
-			persistedDoctor = responseDoctor.getBody();
+			persistedDoctor = responseDoctor.getBody().getContent();
 			log.debug("The persisted doctor is: " + persistedDoctor);
+			doctorCache.putDoctor(responseDoctor.getBody());
 		}
 		
 		return persistedDoctor;
@@ -177,21 +211,23 @@ public class DoctorService extends MyService {
 		params.put("doctorId", shiftConf.getDoctorId());
 		Link linkToPersistShiftConf = links.get(0).expand(params);
 		log.debug("The link to PUT the shift configuration is: " + linkToPersistShiftConf);
-		RestTemplate restTemplate = restTemplateBuilder.build();
-		HttpEntity<ShiftConfiguration> req = new HttpEntity<ShiftConfiguration>(shiftConf, this.getSessionHeaders());
-		ResponseEntity<ShiftConfiguration> respShiftConf = null;
+		// The response is decoded along with its links so that it can be cached
+		ParameterizedTypeReference<EntityModel<ShiftConfiguration>> shiftConfTypeReference = 
+				new ParameterizedTypeReference<EntityModel<ShiftConfiguration>>() {};
+		ResponseEntity<EntityModel<ShiftConfiguration>> respShiftConf = null;
 		try {
-			respShiftConf = restTemplate.exchange(linkToPersistShiftConf.toUri(), HttpMethod.PUT, req,
-					ShiftConfiguration.class);
+			respShiftConf = this.exchangeInSession(shiftConfLink, linkToPersistShiftConf.toUri(), HttpMethod.PUT,
+					shiftConf, shiftConfTypeReference);
 			log.debug("The response shift configuration is: " + respShiftConf);
 			log.debug("The persisted shift configuration is:  " + respShiftConf.getBody());
 		} catch (NotFound e) {
 			log.info("The shift configuration does not already exist. Attempting to create it");
+			upstreamMetrics.countFallback("saveShiftConfiguration", HttpMethod.PUT, HttpMethod.POST);
 			linkToPersistShiftConf = links.get(1);
 			log.debug("The link to POST the shift configuration is: " + linkToPersistShiftConf);
 			try {
-				respShiftConf = restTemplate.postForEntity(linkToPersistShiftConf.toUri(), req,
-						ShiftConfiguration.class);
+				respShiftConf = this.exchangeInSession(shiftConfsLink, linkToPersistShiftConf.toUri(),
+						HttpMethod.POST, shiftConf, shiftConfTypeReference);
 				log.debug("The response shift configuration is: " + respShiftConf);
 				log.debug("The persisted shift configuration is:  " + respShiftConf.getBody());
 			} catch (RestClientException e1) {
@@ -200,5 +236,9 @@ public class DoctorService extends MyService {
 		} catch (RestClientException e) {
 			log.error("Unexpected exception occurred: " + e);
 		}
+		
+		if (respShiftConf != null && respShiftConf.getBody() != null) {
+			doctorCache.putShiftConfiguration(respShiftConf.getBody());
+		}
 	}
 }
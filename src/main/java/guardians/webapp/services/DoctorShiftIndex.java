@@ -0,0 +1,173 @@
+package guardians.webapp.services;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.springframework.stereotype.Component;
+
+import guardians.webapp.model.Doctor;
+import guardians.webapp.model.DoctorShift;
+import guardians.webapp.model.DoctorShift.Kind;
+import guardians.webapp.model.Schedule;
+import guardians.webapp.model.ScheduleMatrix;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class indexes the {@link Schedule}s received from the REST service by
+ * doctor, so the shifts of a doctor in a range of months can be found without
+ * walking the schedules.
+ *
+ * For each doctor, the months are kept sorted, and each month only stores the
+ * days of the cycle shifts, shifts and consultations of the doctor as the bits
+ * of three longs (see {@link ScheduleMatrix}). Finding the shifts of a range of
+ * months only visits the months of the range.
+ *
+ * The index is updated by month: when a schedule is received, the entries of
+ * its month are replaced, and when a schedule is about to change (e.g. it is
+ * regenerated or confirmed), the entries of its month are removed until it is
+ * received again.
+ *
+ * Only the months whose schedule was confirmed when it was indexed are final
+ * (see {@link #isFinal(YearMonth)}). The entries of the rest of months may be
+ * outdated, so their schedule has to be received again to be sure they are up
+ * to date.
+ *
+ * @author miggoncan
+ */
+@Component
+@Slf4j
+public class DoctorShiftIndex {
+	/**
+	 * The months of each doctor, indexed by the id of the doctor
+	 */
+	private final Map<Long, NavigableMap<YearMonth, MonthShifts>> doctorMonths = new ConcurrentHashMap<>();
+	/**
+	 * The ids of the doctors of each indexed month
+	 */
+	private final Map<YearMonth, Set<Long>> monthDoctors = new ConcurrentHashMap<>();
+	/**
+	 * The indexed months whose schedule is confirmed, so their entries will not
+	 * change
+	 */
+	private final Set<YearMonth> finalMonths = ConcurrentHashMap.newKeySet();
+
+	private static class MonthShifts {
+		private final long cycleShiftDays;
+		private final long shiftDays;
+		private final long consultationDays;
+
+		public MonthShifts(long cycleShiftDays, long shiftDays, long consultationDays) {
+			this.cycleShiftDays = cycleShiftDays;
+			this.shiftDays = shiftDays;
+			this.consultationDays = consultationDays;
+		}
+	}
+
+	/**
+	 * Replace the entries of the month of the schedule
+	 *
+	 * @param schedule The received schedule
+	 */
+	public synchronized void index(Schedule schedule) {
+		ScheduleMatrix matrix = ScheduleMatrix.of(schedule);
+		YearMonth yearMonth = matrix.getYearMonth();
+		List<Doctor> doctors = matrix.getDoctors();
+		Set<Long> doctorIds = new HashSet<>();
+		for (int i = 0; i < doctors.size(); i++) {
+			Long doctorId = doctors.get(i).getId();
+			if (doctorId == null) {
+				continue;
+			}
+			doctorIds.add(doctorId);
+			doctorMonths.computeIfAbsent(doctorId, id -> new ConcurrentSkipListMap<>()).put(yearMonth,
+					new MonthShifts(matrix.getCycleShiftDays(i), matrix.getShiftDays(i),
+							matrix.getConsultationDays(i)));
+		}
+		Set<Long> previousDoctorIds = monthDoctors.put(yearMonth, doctorIds);
+		if (previousDoctorIds != null) {
+			previousDoctorIds.removeAll(doctorIds);
+			this.removeEntries(yearMonth, previousDoctorIds);
+		}
+		if (ScheduleCache.isConfirmed(schedule)) {
+			finalMonths.add(yearMonth);
+		} else {
+			finalMonths.remove(yearMonth);
+		}
+		log.debug("Indexed the shifts of " + doctorIds.size() + " doctors in " + yearMonth);
+	}
+
+	/**
+	 * Remove the entries of a month
+	 *
+	 * @param yearMonth The month whose schedule is about to change
+	 */
+	public synchronized void remove(YearMonth yearMonth) {
+		finalMonths.remove(yearMonth);
+		Set<Long> doctorIds = monthDoctors.remove(yearMonth);
+		if (doctorIds != null) {
+			log.debug("Removing the indexed shifts of " + yearMonth);
+			this.removeEntries(yearMonth, doctorIds);
+		}
+	}
+
+	private void removeEntries(YearMonth yearMonth, Set<Long> doctorIds) {
+		for (Long doctorId : doctorIds) {
+			NavigableMap<YearMonth, MonthShifts> months = doctorMonths.get(doctorId);
+			if (months != null) {
+				months.remove(yearMonth);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the schedule of the month has been indexed, and it was
+	 *         confirmed, so its entries will not change
+	 */
+	public boolean isFinal(YearMonth yearMonth) {
+		return finalMonths.contains(yearMonth);
+	}
+
+	/**
+	 * @param doctorId The id of the doctor
+	 * @param from     The first month, included
+	 * @param to       The last month, included
+	 * @return The cycle shifts, shifts and consultations of the doctor in the
+	 *         indexed months of the range, sorted by date and kind
+	 */
+	public List<DoctorShift> getShifts(Long doctorId, YearMonth from, YearMonth to) {
+		NavigableMap<YearMonth, MonthShifts> months = doctorMonths.get(doctorId);
+		if (months == null) {
+			return Collections.emptyList();
+		}
+		List<DoctorShift> shifts = new ArrayList<>();
+		for (Map.Entry<YearMonth, MonthShifts> entry : months.subMap(from, true, to, true).entrySet()) {
+			YearMonth yearMonth = entry.getKey();
+			MonthShifts monthShifts = entry.getValue();
+			long days = monthShifts.cycleShiftDays | monthShifts.shiftDays | monthShifts.consultationDays;
+			// Visit only the days with any assignment, from the lowest bit
+			while (days != 0) {
+				long dayBit = Long.lowestOneBit(days);
+				int day = Long.numberOfTrailingZeros(dayBit) + 1;
+				if ((monthShifts.cycleShiftDays & dayBit) != 0) {
+					shifts.add(new DoctorShift(yearMonth.atDay(day), Kind.CYCLE_SHIFT));
+				}
+				if ((monthShifts.shiftDays & dayBit) != 0) {
+					shifts.add(new DoctorShift(yearMonth.atDay(day), Kind.SHIFT));
+				}
+				if ((monthShifts.consultationDays & dayBit) != 0) {
+					shifts.add(new DoctorShift(yearMonth.atDay(day), Kind.CONSULTATION));
+				}
+				days &= ~dayBit;
+			}
+		}
+		return shifts;
+	}
+}
@@ -0,0 +1,69 @@
+package guardians.webapp.services;
+
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import guardians.webapp.model.Doctor;
+import guardians.webapp.model.DoctorShift;
+import guardians.webapp.model.Schedule;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class finds the shifts of a {@link Doctor} in a range of months, using
+ * the {@link DoctorShiftIndex}. The schedules of the months that are not final
+ * in the index are requested at the same time, through the
+ * {@link ScheduleCache}, and they are indexed as they are received from the
+ * REST service. So the shifts of a month that is not confirmed yet are at most
+ * as old as its cached schedule.
+ *
+ * The months without a schedule are remembered by the {@link ScheduleCache}
+ * for a short time, so they are not requested again on every search.
+ *
+ * @author miggoncan
+ */
+@Service
+@Slf4j
+public class DoctorShiftService {
+	@Autowired
+	private DoctorShiftIndex doctorShiftIndex;
+	@Autowired
+	private AsyncScheduleService asyncScheduleService;
+	@Autowired
+	private ScheduleCache scheduleCache;
+
+	/**
+	 * @param doctorId The id of the doctor
+	 * @param from     The first month, included
+	 * @param to       The last month, included
+	 * @return The cycle shifts, shifts and consultations of the doctor, sorted by
+	 *         date
+	 */
+	public List<DoctorShift> getShifts(Long doctorId, YearMonth from, YearMonth to) {
+		log.info("Request to get the shifts of doctor " + doctorId + " from " + from + " to " + to);
+		Map<YearMonth, CompletableFuture<EntityModel<Schedule>>> scheduleFutures = new LinkedHashMap<>();
+		for (YearMonth yearMonth = from; !yearMonth.isAfter(to); yearMonth = yearMonth.plusMonths(1)) {
+			if (!doctorShiftIndex.isFinal(yearMonth) && !scheduleCache.isMissing(yearMonth)) {
+				// Receiving the schedule from the REST service indexes it
+				scheduleFutures.put(yearMonth, asyncScheduleService.getSchedule(yearMonth));
+			}
+		}
+		log.debug(scheduleFutures.size() + " months may have to be indexed");
+		for (Map.Entry<YearMonth, CompletableFuture<EntityModel<Schedule>>> entry : scheduleFutures.entrySet()) {
+			try {
+				UpstreamExecutor.join(entry.getValue());
+			} catch (HttpClientErrorException.NotFound e) {
+				log.debug("The month " + entry.getKey() + " does not have a schedule");
+				scheduleCache.putMissing(entry.getKey());
+			}
+		}
+		return doctorShiftIndex.getShifts(doctorId, from, to);
+	}
+}
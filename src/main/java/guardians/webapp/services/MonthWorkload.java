@@ -0,0 +1,48 @@
+package guardians.webapp.services;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import guardians.webapp.model.Doctor;
+import guardians.webapp.model.Schedule;
+import guardians.webapp.model.ScheduleMatrix;
+
+/**
+ * This class contains the number of shifts, cycle shifts and consultations of
+ * each doctor in the {@link Schedule} of a month. The counters are kept in
+ * arrays, indexed as the doctors.
+ *
+ * @author miggoncan
+ */
+class MonthWorkload {
+	final YearMonth yearMonth;
+	final Doctor[] doctors;
+	final int[] shifts;
+	final int[] cycleShifts;
+	final int[] consultations;
+
+	private MonthWorkload(YearMonth yearMonth, int numDoctors) {
+		this.yearMonth = yearMonth;
+		this.doctors = new Doctor[numDoctors];
+		this.shifts = new int[numDoctors];
+		this.cycleShifts = new int[numDoctors];
+		this.consultations = new int[numDoctors];
+	}
+
+	/**
+	 * @param schedule The schedule of the month
+	 * @return The workload of each doctor in the schedule
+	 */
+	static MonthWorkload of(Schedule schedule) {
+		ScheduleMatrix matrix = ScheduleMatrix.of(schedule);
+		List<Doctor> doctors = matrix.getDoctors();
+		MonthWorkload workload = new MonthWorkload(matrix.getYearMonth(), doctors.size());
+		for (int i = 0; i < doctors.size(); i++) {
+			workload.doctors[i] = doctors.get(i);
+			workload.shifts[i] = matrix.countShifts(i);
+			workload.cycleShifts[i] = matrix.countCycleShifts(i);
+			workload.consultations[i] = matrix.countConsultations(i);
+		}
+		return workload;
+	}
+}
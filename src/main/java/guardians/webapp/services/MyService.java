@@ -1,18 +1,22 @@
 package guardians.webapp.services;
 
-import java.net.HttpCookie;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.net.URI;
+import java.util.Arrays;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.hateoas.EntityModel;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.client.Traverson;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.web.client.HttpClientErrorException.Unauthorized;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -27,7 +31,15 @@ public class MyService {
 	@Autowired
 	protected Traverson traverson;
 	@Autowired
-	protected RestTemplateBuilder restTemplateBuilder;
+	protected RestTemplate restTemplate;
+	@Autowired
+	protected RootLinkRegistry rootLinkRegistry;
+	@Autowired
+	protected UpstreamSessionManager upstreamSessionManager;
+	@Autowired
+	protected UpstreamMetrics upstreamMetrics;
+	@Autowired
+	protected SingleFlight singleFlight;
 
 	@Value("${api.uri}")
 	protected String restUri;
@@ -60,38 +72,57 @@ public class MyService {
 	 * @return The headers that should be used in the request
 	 */
 	protected HttpHeaders getSessionHeaders() {
-		log.info("Request to get session headers");
-		HttpHeaders headers = new HttpHeaders();
-		ResponseEntity<Object> resp = restTemplateBuilder.build().getForEntity(restUri, Object.class);
-		log.debug("The response is: " + resp);
-		List<String> cookiesStr = resp.getHeaders().get(HttpHeaders.SET_COOKIE);
-		log.debug("The list of cookies as Strings is: " + cookiesStr);
-		if (cookiesStr != null && !cookiesStr.isEmpty()) {
-			List<HttpCookie> cookies = new ArrayList<>();
-			// Parse the list of cookiesStr and add them to the cookies list
-			cookiesStr.stream().map((c) -> HttpCookie.parse(c)).forEachOrdered((cook) -> {
-				cook.forEach((a) -> {
-					HttpCookie cookieExists = cookies.stream().filter(x -> a.getName().equals(x.getName())).findAny()
-							.orElse(null);
-					if (cookieExists != null) {
-						cookies.remove(cookieExists);
-					}
-					cookies.add(a);
-				});
-			});
-			log.debug("The extracted cookies are: " + cookies);
-			StringBuilder sb = new StringBuilder();
-			for (HttpCookie cookie : cookies) {
-				sb.append(cookie.toString()).append(";");
-			}
-			String mappedCookies = sb.toString();
-			log.debug("The cookies to be added are: " + mappedCookies);
-			headers.add(HttpHeaders.COOKIE, mappedCookies);
-		} else {
-			log.debug("No cookies to set found on the response");
+		return upstreamSessionManager.getSessionHeaders();
+	}
+
+	/**
+	 * Send a request to the REST service including the session headers. If the
+	 * session is rejected by the REST service (401 Unauthorized), it will be
+	 * renewed and the request will be sent once again. Other errors, such as a 403
+	 * (Forbidden) for a confirmed schedule, are not retried. Each attempt is timed
+	 * by {@link UpstreamMetrics}
+	 * 
+	 * @param rel          The rel of the link the request is sent to
+	 * @param uri          The uri the request will be sent to
+	 * @param method       The HTTP method of the request
+	 * @param body         The body of the request. Can be null
+	 * @param responseType The type of the body of the response
+	 * @return The response entity
+	 * @throws RestClientException if the request fails
+	 */
+	protected <T> ResponseEntity<T> exchangeInSession(String rel, URI uri, HttpMethod method,
+			@Nullable Object body, Class<T> responseType) {
+		HttpHeaders headers = this.getSessionHeaders();
+		try {
+			return upstreamMetrics.record(rel, method,
+					() -> restTemplate.exchange(uri, method, new HttpEntity<>(body, headers), responseType));
+		} catch (Unauthorized e) {
+			log.info("The request was rejected: " + e + ". Retrying with a new session");
+			upstreamSessionManager.reject(headers);
+			HttpHeaders newHeaders = this.getSessionHeaders();
+			return upstreamMetrics.record(rel, method,
+					() -> restTemplate.exchange(uri, method, new HttpEntity<>(body, newHeaders), responseType));
+		}
+	}
+
+	/**
+	 * The same as
+	 * {@link #exchangeInSession(String, URI, HttpMethod, Object, Class)}, but
+	 * for generic response types
+	 */
+	protected <T> ResponseEntity<T> exchangeInSession(String rel, URI uri, HttpMethod method,
+			@Nullable Object body, ParameterizedTypeReference<T> responseType) {
+		HttpHeaders headers = this.getSessionHeaders();
+		try {
+			return upstreamMetrics.record(rel, method,
+					() -> restTemplate.exchange(uri, method, new HttpEntity<>(body, headers), responseType));
+		} catch (Unauthorized e) {
+			log.info("The request was rejected: " + e + ". Retrying with a new session");
+			upstreamSessionManager.reject(headers);
+			HttpHeaders newHeaders = this.getSessionHeaders();
+			return upstreamMetrics.record(rel, method,
+					() -> restTemplate.exchange(uri, method, new HttpEntity<>(body, newHeaders), responseType));
 		}
-		log.info("The created headers are: " + headers);
-		return headers;
 	}
 
 	/**
@@ -105,15 +136,9 @@ public class MyService {
 	 *         rel, the second Link to the second rel, and so on.
 	 */
 	protected List<Link> getRootRequiredLinks(String... rels) {
-		log.info("Request to get root required link with rels: " + rels);
-		EntityModel<?> rootResource = restTemplateBuilder.build().getForObject(restUri, EntityModel.class);
-		log.debug("The root resource is: " + rootResource);
-		List<Link> links = new LinkedList<>();
-		for (String rel : rels) {
-			Link link = rootResource.getRequiredLink(rel);
-			log.info("The found link for rel: " + rel + " is: " + link);
-			links.add(link);
-		}
+		log.info("Request to get root required link with rels: " + Arrays.toString(rels));
+		List<Link> links = rootLinkRegistry.getRequiredLinks(rels);
+		log.info("The found links are: " + links);
 		return links;
 	}
 }
@@ -0,0 +1,112 @@
+package guardians.webapp.services;
+
+import java.time.YearMonth;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import guardians.webapp.model.Schedule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class keeps in memory the excel files created from confirmed
+ * {@link Schedule}s, as they can no longer change.
+ *
+ * The files are indexed by the month of the schedule, the type of file and the
+ * settings used to style it, so changing the settings does not return files
+ * with the old style. The size of the cache is bounded by the total number of
+ * bytes of the files.
+ *
+ * The hits and misses of the cache are published with the name
+ * "renderedExcel".
+ *
+ * @author miggoncan
+ */
+@Component
+@Slf4j
+public class RenderedExcelCache {
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${guardians.cache.excel.max-bytes}")
+	private Long maxBytes;
+
+	private Cache<Key, RenderedExcel> renderedExcels;
+
+	@EqualsAndHashCode
+	@ToString
+	@RequiredArgsConstructor
+	public static class Key {
+		private final YearMonth yearMonth;
+		private final boolean isXlsx;
+		/**
+		 * @see Schedule2ExcelService#getStyleFingerprint()
+		 */
+		private final String styleFingerprint;
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	public static class RenderedExcel {
+		private final byte[] bytes;
+		/**
+		 * The weak entity tag of the file, derived from the content of the
+		 * schedule
+		 */
+		private final String eTag;
+	}
+
+	@PostConstruct
+	public void init() {
+		renderedExcels = Caffeine.newBuilder()
+				.maximumWeight(maxBytes)
+				.weigher((Key key, RenderedExcel value) -> value.getBytes().length)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, renderedExcels, "renderedExcel");
+	}
+
+	/**
+	 * @return The file, or null if it is not cached
+	 */
+	@Nullable
+	public RenderedExcel get(Key key) {
+		return renderedExcels.getIfPresent(key);
+	}
+
+	/**
+	 * Get a file, creating it if it is not cached. If several threads ask for the
+	 * same missing file at the same time, it is only created once
+	 *
+	 * @param key    The key of the file
+	 * @param render Creates the file
+	 * @return The cached or created file
+	 */
+	public RenderedExcel get(Key key, Function<Key, RenderedExcel> render) {
+		return renderedExcels.get(key, render);
+	}
+
+	/**
+	 * Forget all the files of the given month
+	 *
+	 * @param yearMonth The month of the schedule
+	 */
+	public void invalidate(YearMonth yearMonth) {
+		log.debug("Invalidating the cached excel files of " + yearMonth);
+		renderedExcels.asMap().keySet().removeIf(key -> key.yearMonth.equals(yearMonth));
+	}
+}
@@ -0,0 +1,209 @@
+package guardians.webapp.services;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Links;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class keeps the root resource of the REST service, along with the
+ * {@link Link}s it contains.
+ *
+ * The root resource is only requested again when it has expired or when it is
+ * refreshed in the background, so both the services and the
+ * {@link org.springframework.hateoas.client.Traverson} can use it without
+ * requesting it on every call.
+ *
+ * @author miggoncan
+ */
+@Component
+@Slf4j
+public class RootLinkRegistry {
+	@Autowired
+	private RestTemplate restTemplate;
+	@Autowired
+	private UpstreamMetrics upstreamMetrics;
+
+	@Value("${api.uri}")
+	private String restUri;
+	@Value("${api.links.root}")
+	private String rootLink;
+	@Value("${guardians.rest.root-links.ttl}")
+	private Long ttl;
+
+	/**
+	 * Only used to read the tree of the root resource. No configuration is needed
+	 */
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * The last root resource received. It will be null until it is requested for
+	 * the first time
+	 */
+	private volatile RootResource rootResource;
+
+	/**
+	 * This class contains the information received when requesting the root
+	 * resource of the REST service
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	public static class RootResource {
+		/**
+		 * The body of the response, as it was received
+		 */
+		private final String body;
+		private final MediaType contentType;
+		private final Links links;
+		/**
+		 * When this resource was received, in milliseconds since the epoch
+		 */
+		private final long receivedAt;
+
+		public boolean isExpired(long ttl) {
+			return System.currentTimeMillis() - receivedAt > ttl;
+		}
+	}
+
+	/**
+	 * Get the required {@link Link}s from the root resource.
+	 *
+	 * Note a link is considered required if it will always be present in the
+	 * response.
+	 *
+	 * @param rels The relations of the required links
+	 * @return The list of found links. The first Link will correspond to the first
+	 *         rel, the second Link to the second rel, and so on.
+	 * @throws IllegalArgumentException if any of the links is not found
+	 */
+	public List<Link> getRequiredLinks(String... rels) {
+		Links rootLinks = this.getRootResource().getLinks();
+		List<Link> links = new LinkedList<>();
+		for (String rel : rels) {
+			Link link = rootLinks.getRequiredLink(rel);
+			log.debug("The found link for rel: " + rel + " is: " + link);
+			links.add(link);
+		}
+		return links;
+	}
+
+	/**
+	 * @return The root resource of the REST service. It will only be requested if
+	 *         it was not already known or if it has expired
+	 * @throws RestClientException if the root resource could not be retrieved
+	 */
+	public RootResource getRootResource() {
+		RootResource root = this.rootResource;
+		if (root == null || root.isExpired(ttl)) {
+			root = this.refreshIfExpired();
+		}
+		return root;
+	}
+
+	/**
+	 * Request the root resource again, even if it has not expired yet
+	 *
+	 * @return The received root resource
+	 * @throws RestClientException if the root resource could not be retrieved
+	 */
+	public synchronized RootResource refresh() {
+		log.info("Request to refresh the root resource of the REST service");
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Collections.singletonList(MediaTypes.HAL_JSON));
+		ResponseEntity<String> resp = upstreamMetrics.record(rootLink, HttpMethod.GET,
+				() -> restTemplate.exchange(restUri, HttpMethod.GET, new HttpEntity<>(headers), String.class));
+		String body = resp.getBody();
+		log.debug("The received root resource is: " + body);
+		MediaType contentType = resp.getHeaders().getContentType();
+		if (contentType == null) {
+			contentType = MediaTypes.HAL_JSON;
+		}
+		Links links;
+		try {
+			links = this.parseLinks(body);
+		} catch (IOException e) {
+			throw new RestClientException("The root resource could not be parsed", e);
+		}
+		log.info("The links of the root resource are: " + links);
+		RootResource root = new RootResource(body, contentType, links, System.currentTimeMillis());
+		this.rootResource = root;
+		return root;
+	}
+
+	/**
+	 * This method will periodically refresh the root resource, so that requests
+	 * do not have to wait for it once it expires. If the refresh fails, the
+	 * previous root resource is kept until it expires.
+	 */
+	@Scheduled(initialDelayString = "${guardians.rest.root-links.refresh-interval}",
+			fixedDelayString = "${guardians.rest.root-links.refresh-interval}")
+	public void refreshInBackground() {
+		if (this.rootResource == null) {
+			log.debug("The root resource has not been requested yet. Skipping background refresh");
+			return;
+		}
+		try {
+			this.refresh();
+		} catch (RestClientException e) {
+			log.warn("The root resource could not be refreshed in the background: " + e);
+		}
+	}
+
+	private synchronized RootResource refreshIfExpired() {
+		// Another thread may have already refreshed it while this one was waiting
+		RootResource root = this.rootResource;
+		if (root == null || root.isExpired(ttl)) {
+			root = this.refresh();
+		}
+		return root;
+	}
+
+	/**
+	 * @param body The HAL representation of a resource
+	 * @return The links found in the "_links" attribute of the resource
+	 */
+	private Links parseLinks(String body) throws IOException {
+		List<Link> links = new LinkedList<>();
+		if (body != null) {
+			JsonNode linksNode = objectMapper.readTree(body).path("_links");
+			Iterator<Map.Entry<String, JsonNode>> fields = linksNode.fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				String rel = field.getKey();
+				JsonNode linkNode = field.getValue();
+				if (linkNode.isArray()) {
+					for (JsonNode arrayLinkNode : linkNode) {
+						links.add(Link.of(arrayLinkNode.path("href").asText(), rel));
+					}
+				} else {
+					links.add(Link.of(linkNode.path("href").asText(), rel));
+				}
+			}
+		}
+		return Links.of(links);
+	}
+}
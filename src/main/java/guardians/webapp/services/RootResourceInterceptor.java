@@ -0,0 +1,94 @@
+package guardians.webapp.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import guardians.webapp.services.RootLinkRegistry.RootResource;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This interceptor answers the GET requests to the root resource of the REST
+ * service with the root resource kept by the {@link RootLinkRegistry}.
+ *
+ * It is meant to be used by the RestTemplate of the
+ * {@link org.springframework.hateoas.client.Traverson}, which requests the root
+ * resource every time a link is followed.
+ *
+ * @author miggoncan
+ */
+@Slf4j
+public class RootResourceInterceptor implements ClientHttpRequestInterceptor {
+	private final URI rootUri;
+	private final RootLinkRegistry rootLinkRegistry;
+
+	public RootResourceInterceptor(URI rootUri, RootLinkRegistry rootLinkRegistry) {
+		this.rootUri = rootUri.normalize();
+		this.rootLinkRegistry = rootLinkRegistry;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+		if (request.getMethod() == HttpMethod.GET && rootUri.equals(request.getURI().normalize())) {
+			log.debug("Answering the request to the root resource with the known one");
+			return new RootResourceResponse(rootLinkRegistry.getRootResource());
+		}
+		return execution.execute(request, body);
+	}
+
+	/**
+	 * A successful response whose body is the one of a known {@link RootResource}
+	 */
+	private static class RootResourceResponse implements ClientHttpResponse {
+		private final byte[] body;
+		private final HttpHeaders headers;
+
+		public RootResourceResponse(RootResource rootResource) {
+			this.body = rootResource.getBody() == null ? new byte[0]
+					: rootResource.getBody().getBytes(StandardCharsets.UTF_8);
+			this.headers = new HttpHeaders();
+			this.headers.setContentType(rootResource.getContentType());
+			this.headers.setContentLength(this.body.length);
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			return new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return HttpStatus.OK;
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return HttpStatus.OK.value();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return HttpStatus.OK.getReasonPhrase();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
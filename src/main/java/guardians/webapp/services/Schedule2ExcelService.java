@@ -3,9 +3,28 @@ package guardians.webapp.services;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.BorderStyle;
@@ -19,13 +38,22 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import guardians.webapp.model.Doctor;
 import guardians.webapp.model.Schedule;
-import guardians.webapp.model.ScheduleDay;
+import guardians.webapp.model.ScheduleMatrix;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 @Component
@@ -51,154 +79,458 @@ public class Schedule2ExcelService {
 	@Value("${guardians.excel.column-width}")
 	private Integer colWidth;
 
+	@Value("${guardians.excel.streaming}")
+	private Boolean streaming;
+	@Value("${guardians.excel.streaming-window-size}")
+	private Integer streamingWindowSize;
+
+	@Value("${guardians.excel.import.max-errors}")
+	private Integer importMaxErrors;
+
+	@Value("${guardians.excel.render.threads}")
+	private Integer renderThreads;
+	@Value("${guardians.excel.render.queue-capacity}")
+	private Integer renderQueueCapacity;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private DoctorService doctorService;
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * Renders the months of a multi-month export in parallel. When all the threads
+	 * are in use, the month is rendered by the calling thread. The metrics of the
+	 * pool are published with the name "guardians.excel-render"
+	 */
+	private ExecutorService renderExecutor;
+
+	@PostConstruct
+	public void init() {
+		log.info("Creating the excel render executor with " + renderThreads + " threads");
+		ThreadPoolExecutor threadPool = new ThreadPoolExecutor(renderThreads, renderThreads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(renderQueueCapacity), new CustomizableThreadFactory("excel-render-"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		threadPool.allowCoreThreadTimeOut(true);
+		this.renderExecutor = ExecutorServiceMetrics.monitor(meterRegistry, threadPool, "guardians.excel-render");
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		log.info("Shutting down the excel render executor");
+		renderExecutor.shutdown();
+	}
+
+	/**
+	 * @return A String that changes when any of the settings used to style the
+	 *         excel files changes
+	 */
+	public String getStyleFingerprint() {
+		return String.join("|", csFontName, String.valueOf(csFontSize), String.valueOf(csFontIsBold),
+				sFontName, String.valueOf(sFontSize), String.valueOf(sFontIsBold),
+				String.valueOf(firstColWidth), String.valueOf(colWidth));
+	}
+
+	/**
+	 * @param schedule The schedule converted to excel
+	 * @param useXlsx  Whether the file is a xlsx or a xls file
+	 * @return A weak entity tag of the excel file created from the schedule. It
+	 *         only depends on the content of the schedule, the type of file and
+	 *         the style settings, so it can be calculated without creating the
+	 *         file. It is weak because two files created from the same schedule
+	 *         are equivalent, but not byte-identical (e.g. the entries of xlsx
+	 *         files contain the time they were written)
+	 */
+	public String getETag(Schedule schedule, boolean useXlsx) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		// The links and weeks of the schedule are not serialized
+		objectMapper.writeValue(content, schedule);
+		content.write((useXlsx + "|" + this.getStyleFingerprint()).getBytes(StandardCharsets.UTF_8));
+		return "W/\"" + DigestUtils.md5DigestAsHex(content.toByteArray()) + "\"";
+	}
+
 	public ByteArrayOutputStream toExcel(Schedule schedule, boolean useXlsx) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		this.writeExcel(schedule, useXlsx, outputStream);
+		return outputStream;
+	}
+
+	/**
+	 * Convert a {@link Schedule} to an excel file, written directly to the given
+	 * output stream.
+	 *
+	 * If streaming is enabled, xlsx files are created with a {@link SXSSFWorkbook}.
+	 * Only the last rows (as many as the streaming window size) are kept in
+	 * memory, the rest are flushed to a temporary file, so the memory used does
+	 * not depend on the size of the schedule
+	 *
+	 * @param schedule     The schedule to be converted
+	 * @param useXlsx      Whether a xlsx or a xls file is created
+	 * @param outputStream Where the file is written. It is not closed
+	 */
+	public void writeExcel(Schedule schedule, boolean useXlsx, OutputStream outputStream) throws IOException {
 		log.info("Request to convert to excel");
+		this.writeExcel(Collections.singletonList(schedule), useXlsx, outputStream);
+	}
+
+	/**
+	 * Convert several {@link Schedule}s to a single excel file, with a sheet per
+	 * schedule, written directly to the given output stream.
+	 *
+	 * The contents of the sheets are laid out in parallel. As workbooks cannot be
+	 * modified by several threads at the same time, the sheets are then written
+	 * one after another, all of them sharing the same styles
+	 *
+	 * @param schedules    The schedules to be converted, in the order of the
+	 *                     sheets
+	 * @param useXlsx      Whether a xlsx or a xls file is created
+	 * @param outputStream Where the file is written. It is not closed
+	 * @see #writeExcel(Schedule, boolean, OutputStream)
+	 */
+	public void writeExcel(List<Schedule> schedules, boolean useXlsx, OutputStream outputStream)
+			throws IOException {
+		log.info("Request to convert " + schedules.size() + " schedules to a single excel");
+		List<SheetLayout> layouts;
+		if (schedules.size() == 1) {
+			layouts = Collections.singletonList(this.layout(schedules.get(0)));
+		} else {
+			List<CompletableFuture<SheetLayout>> layoutFutures = new ArrayList<>(schedules.size());
+			for (Schedule schedule : schedules) {
+				layoutFutures.add(CompletableFuture.supplyAsync(() -> this.layout(schedule), renderExecutor));
+			}
+			layouts = new ArrayList<>(schedules.size());
+			for (CompletableFuture<SheetLayout> layoutFuture : layoutFutures) {
+				layouts.add(UpstreamExecutor.join(layoutFuture));
+			}
+		}
+
+		Workbook workbook;
+		if (!useXlsx) {
+			workbook = new HSSFWorkbook();
+		} else if (streaming) {
+			log.debug("Using a streaming workbook with a window of " + streamingWindowSize + " rows");
+			// The temporary files are compressed, as they can be big
+			workbook = new SXSSFWorkbook(null, streamingWindowSize, true);
+		} else {
+			workbook = new XSSFWorkbook();
+		}
+		try {
+			Styles styles = new Styles(workbook);
+			for (SheetLayout layout : layouts) {
+				this.writeSheet(workbook, styles, layout);
+			}
+			log.info("Excel generation finished. Writing the workbook to an output stream");
+			workbook.write(outputStream);
+		} finally {
+			if (workbook instanceof SXSSFWorkbook) {
+				// Delete the temporary files
+				((SXSSFWorkbook) workbook).dispose();
+			}
+			workbook.close();
+		}
+	}
+
+	/**
+	 * Convert several {@link Schedule}s to a zip file, with an excel file per
+	 * schedule named after its month, written directly to the given output
+	 * stream.
+	 *
+	 * The excel files are created in parallel, and added to the zip file in the
+	 * order of the schedules as soon as each of them is ready
+	 *
+	 * @param schedules    The schedules to be converted
+	 * @param useXlsx      Whether xlsx or xls files are created
+	 * @param render       Creates the excel file of a schedule. It allows the
+	 *                     caller to reuse files already created
+	 * @param outputStream Where the zip file is written. It is not closed
+	 */
+	public void writeZip(List<Schedule> schedules, boolean useXlsx, Function<Schedule, byte[]> render,
+			OutputStream outputStream) throws IOException {
+		log.info("Request to convert " + schedules.size() + " schedules to a zip of excel files");
+		List<CompletableFuture<byte[]>> files = new ArrayList<>(schedules.size());
+		for (Schedule schedule : schedules) {
+			files.add(CompletableFuture.supplyAsync(() -> render.apply(schedule), renderExecutor));
+		}
+		ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+		for (int i = 0; i < schedules.size(); i++) {
+			Schedule schedule = schedules.get(i);
+			String fileName = YearMonth.of(schedule.getYear(), schedule.getMonth()) + (useXlsx ? ".xlsx" : ".xls");
+			byte[] file = UpstreamExecutor.join(files.get(i));
+			log.debug("Adding " + fileName + " to the zip file");
+			zipOutputStream.putNextEntry(new ZipEntry(fileName));
+			zipOutputStream.write(file);
+			zipOutputStream.closeEntry();
+		}
+		// The zip file is completed, but the output stream is not closed
+		zipOutputStream.finish();
+	}
+
+	/**
+	 * @see #writeZip(List, boolean, Function, OutputStream)
+	 */
+	public void writeZip(List<Schedule> schedules, boolean useXlsx, OutputStream outputStream)
+			throws IOException {
+		this.writeZip(schedules, useXlsx, schedule -> {
+			try {
+				return this.toExcel(schedule, useXlsx).toByteArray();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, outputStream);
+	}
+
+	/**
+	 * The kind of a cell with the last names of a doctor. It decides the style of
+	 * the cell
+	 */
+	private enum CellKind {
+		CYCLE_SHIFT, SHIFT_WITH_CYCLE_SHIFT, SHIFT_WITHOUT_CYCLE_SHIFT, CONSULTATION
+	}
+
+	private static class RowLayout {
+		private final int day;
+		private final boolean isWorkingDay;
+		private final List<String> lastNames = new ArrayList<>();
+		private final List<CellKind> kinds = new ArrayList<>();
+
+		public RowLayout(int day, boolean isWorkingDay) {
+			this.day = day;
+			this.isWorkingDay = isWorkingDay;
+		}
+
+		private void add(String lastNames, CellKind kind) {
+			this.lastNames.add(lastNames);
+			this.kinds.add(kind);
+		}
+	}
+
+	/**
+	 * The content of the sheet of a schedule. It does not depend on any workbook,
+	 * so it can be created by any thread
+	 */
+	private static class SheetLayout {
+		private final YearMonth yearMonth;
+		private final List<RowLayout> rows = new ArrayList<>();
+		private int maxGeneratedCols = 1;
+
+		public SheetLayout(YearMonth yearMonth) {
+			this.yearMonth = yearMonth;
+		}
+	}
+
+	/**
+	 * The fonts and styles of a workbook, shared by all its sheets
+	 */
+	private class Styles {
+		private final CellStyle baseStyle;
+		private final CellStyle nonWorkingDayStyle;
+		private final CellStyle cycleShiftStyle;
+		private final CellStyle shiftWithCycleShiftStyle;
+		private final CellStyle shiftWithoutCycleShiftStyle;
+		private final CellStyle consultationStyle;
+
+		public Styles(Workbook workbook) {
+			log.debug("Creating fonts");
+
+			Font cycleShiftFont = workbook.createFont();
+			cycleShiftFont.setFontName(csFontName);
+			cycleShiftFont.setFontHeightInPoints(csFontSize);
+			cycleShiftFont.setBold(csFontIsBold);
+
+			Font shiftFont = workbook.createFont();
+			shiftFont.setFontName(sFontName);
+			shiftFont.setFontHeightInPoints(sFontSize);
+			shiftFont.setBold(sFontIsBold);
+
+			log.debug("Creating styles");
+
+			baseStyle = workbook.createCellStyle();
+			baseStyle.setFillForegroundColor(IndexedColors.WHITE.getIndex());
+			baseStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+			baseStyle.setWrapText(true);
+			baseStyle.setAlignment(HorizontalAlignment.CENTER);
+			baseStyle.setVerticalAlignment(VerticalAlignment.CENTER);
+			baseStyle.setBorderTop(BorderStyle.THIN);
+			baseStyle.setBorderRight(BorderStyle.THIN);
+			baseStyle.setBorderBottom(BorderStyle.THIN);
+			baseStyle.setBorderLeft(BorderStyle.THIN);
+			baseStyle.setTopBorderColor(IndexedColors.BLACK.getIndex());
+			baseStyle.setRightBorderColor(IndexedColors.BLACK.getIndex());
+			baseStyle.setBottomBorderColor(IndexedColors.BLACK.getIndex());
+			baseStyle.setLeftBorderColor(IndexedColors.BLACK.getIndex());
+			baseStyle.setFont(shiftFont);
+
+			nonWorkingDayStyle = workbook.createCellStyle();
+			nonWorkingDayStyle.cloneStyleFrom(baseStyle);
+			nonWorkingDayStyle.setFont(cycleShiftFont);
+			nonWorkingDayStyle.setFillForegroundColor(IndexedColors.ROYAL_BLUE.getIndex());
+
+			cycleShiftStyle = workbook.createCellStyle();
+			cycleShiftStyle.cloneStyleFrom(baseStyle);
+			cycleShiftStyle.setFont(cycleShiftFont);
+			cycleShiftStyle.setFillForegroundColor(IndexedColors.GREY_40_PERCENT.getIndex());
+
+			shiftWithCycleShiftStyle = workbook.createCellStyle();
+			shiftWithCycleShiftStyle.cloneStyleFrom(baseStyle);
+			shiftWithCycleShiftStyle.setFillForegroundColor(IndexedColors.ORANGE.getIndex());
+
+			shiftWithoutCycleShiftStyle = workbook.createCellStyle();
+			shiftWithoutCycleShiftStyle.cloneStyleFrom(baseStyle);
+			shiftWithoutCycleShiftStyle.setFillForegroundColor(IndexedColors.LIGHT_ORANGE.getIndex());
+
+			consultationStyle = workbook.createCellStyle();
+			consultationStyle.cloneStyleFrom(baseStyle);
+			consultationStyle.setFillForegroundColor(IndexedColors.ROSE.getIndex());
+		}
+
+		private CellStyle of(CellKind kind) {
+			switch (kind) {
+			case CYCLE_SHIFT:
+				return cycleShiftStyle;
+			case SHIFT_WITH_CYCLE_SHIFT:
+				return shiftWithCycleShiftStyle;
+			case SHIFT_WITHOUT_CYCLE_SHIFT:
+				return shiftWithoutCycleShiftStyle;
+			default:
+				return consultationStyle;
+			}
+		}
+	}
+
+	/**
+	 * Decide the content of each cell of the sheet of a schedule
+	 */
+	private SheetLayout layout(Schedule schedule) {
 		YearMonth yearMonth = YearMonth.of(schedule.getYear(), schedule.getMonth());
-		log.info("The schedule is for " + yearMonth);
-		Workbook workbook = useXlsx ? new XSSFWorkbook() : new HSSFWorkbook();
-		
-		Sheet sheet = workbook.createSheet(yearMonth.toString());
-		 
-		log.debug("Creating fonts");
-		
-		Font cycleShiftFont = workbook.createFont();
-		cycleShiftFont.setFontName(csFontName);
-		cycleShiftFont.setFontHeightInPoints(csFontSize);
-		cycleShiftFont.setBold(csFontIsBold);
-
-		Font shiftFont = workbook.createFont();
-		shiftFont.setFontName(sFontName);
-		shiftFont.setFontHeightInPoints(sFontSize);
-		shiftFont.setBold(sFontIsBold);
-		
-		log.debug("Creating styles");
-		
-		CellStyle baseStyle = workbook.createCellStyle();
-		baseStyle.setFillForegroundColor(IndexedColors.WHITE.getIndex());
-		baseStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-		baseStyle.setWrapText(true);
-		baseStyle.setAlignment(HorizontalAlignment.CENTER);
-		baseStyle.setVerticalAlignment(VerticalAlignment.CENTER);
-		baseStyle.setBorderTop(BorderStyle.THIN);
-		baseStyle.setBorderRight(BorderStyle.THIN);
-		baseStyle.setBorderBottom(BorderStyle.THIN);
-		baseStyle.setBorderLeft(BorderStyle.THIN);
-		baseStyle.setTopBorderColor(IndexedColors.BLACK.getIndex());
-		baseStyle.setRightBorderColor(IndexedColors.BLACK.getIndex());
-		baseStyle.setBottomBorderColor(IndexedColors.BLACK.getIndex());
-		baseStyle.setLeftBorderColor(IndexedColors.BLACK.getIndex());
-		baseStyle.setFont(shiftFont);
-		
-		CellStyle nonWorkingDayStyle = workbook.createCellStyle();
-		nonWorkingDayStyle.cloneStyleFrom(baseStyle);
-		nonWorkingDayStyle.setFont(cycleShiftFont);
-		nonWorkingDayStyle.setFillForegroundColor(IndexedColors.ROYAL_BLUE.getIndex());
-		
-		CellStyle cycleShiftStyle = workbook.createCellStyle();
-		cycleShiftStyle.cloneStyleFrom(baseStyle);
-		cycleShiftStyle.setFont(cycleShiftFont);
-		cycleShiftStyle.setFillForegroundColor(IndexedColors.GREY_40_PERCENT.getIndex());
-		
-		CellStyle shiftWithCycleShiftStyle = workbook.createCellStyle();
-		shiftWithCycleShiftStyle.cloneStyleFrom(baseStyle);
-		shiftWithCycleShiftStyle.setFillForegroundColor(IndexedColors.ORANGE.getIndex());
-		
-		CellStyle shiftWithoutCycleShiftStyle = workbook.createCellStyle();
-		shiftWithoutCycleShiftStyle.cloneStyleFrom(baseStyle);
-		shiftWithoutCycleShiftStyle.setFillForegroundColor(IndexedColors.LIGHT_ORANGE.getIndex());
-		
-		CellStyle consultationStyle = workbook.createCellStyle();
-		consultationStyle.cloneStyleFrom(baseStyle);
-		consultationStyle.setFillForegroundColor(IndexedColors.ROSE.getIndex());
-		
-		log.debug("Starting to add data to the sheet");
-		
- 		Row row = null;
- 		Cell cell = null;
- 		int maxGeneratedCols = 1;
- 		int currCol = 1;
-		for (ScheduleDay day : schedule.getDays()) {
-			log.debug("Generating row for day: " + day);
-			row = sheet.createRow(day.getDay()-1);
-			cell = row.createCell(0);
-			cell.setCellValue(day.getDay());
-			if (day.getIsWorkingDay()) {
-				cell.setCellStyle(cycleShiftStyle);
+		log.info("Laying out the sheet of " + yearMonth);
+		SheetLayout layout = new SheetLayout(yearMonth);
+		// The matrix answers whether a doctor has a shift on a day with a bit test,
+		// instead of looking for the doctor in the sets of the day
+		ScheduleMatrix matrix = ScheduleMatrix.of(schedule);
+		List<Doctor> doctors = matrix.getDoctors();
+		for (int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+			if (!matrix.hasDay(day)) {
+				continue;
 			}
-			
+			boolean isWorkingDay = matrix.isWorkingDay(day);
+			log.debug("Generating row for day " + day + ". It is a working day: " + isWorkingDay);
+			RowLayout row = new RowLayout(day, isWorkingDay);
+
 			log.debug("Adding cycle shifts");
-			for (Doctor doctor : day.getCycle()) {
-				log.debug("The doctor " + doctor + " has a cycle shift");
-				cell = row.createCell(currCol);
-				cell.setCellValue(doctor.getLastNames());
-				if (day.getIsWorkingDay()) {
-					cell.setCellStyle(cycleShiftStyle);
+			for (int i = 0; i < doctors.size(); i++) {
+				if (matrix.hasCycleShift(i, day)) {
+					row.add(doctors.get(i).getLastNames(), CellKind.CYCLE_SHIFT);
 				}
-				currCol += 1;
 			}
-			
-			if (!day.getIsWorkingDay()) {
-				log.debug("The day is not a working day");
-				row.setRowStyle(nonWorkingDayStyle);
-			} else {
-				log.debug("The day is a working day");
-				log.debug("Adding regular shifts");
-				List<Doctor> doctorsWithShiftAndNotCycleShift = new LinkedList<>();
-				for (Doctor doctor : day.getShifts()) {
-					log.debug("The doctor " + doctor + " has a regular shift");
-					if (day.getCycle().contains(doctor)) {
-						log.debug("The regular shift is associated to a cycle shift");
-						cell = row.createCell(currCol);
-						cell.setCellValue(doctor.getLastNames());
-						cell.setCellStyle(shiftWithCycleShiftStyle);
-						currCol += 1;
-					} else {
-						log.debug("The regular shift is not associated to a cycle shift");
-						doctorsWithShiftAndNotCycleShift.add(doctor);
+
+			if (isWorkingDay) {
+				log.debug("Adding regular shifts associated to a cycle shift");
+				for (int i = 0; i < doctors.size(); i++) {
+					if (matrix.hasShift(i, day) && matrix.hasCycleShift(i, day)) {
+						row.add(doctors.get(i).getLastNames(), CellKind.SHIFT_WITH_CYCLE_SHIFT);
 					}
 				}
 				log.debug("Adding doctors with a regular shift and not a cycle shift");
-				for (Doctor doctor : doctorsWithShiftAndNotCycleShift) {
-					cell = row.createCell(currCol);
-					cell.setCellValue(doctor.getLastNames());
-					cell.setCellStyle(shiftWithoutCycleShiftStyle);
-					currCol += 1;
+				for (int i = 0; i < doctors.size(); i++) {
+					if (matrix.hasShift(i, day) && !matrix.hasCycleShift(i, day)) {
+						row.add(doctors.get(i).getLastNames(), CellKind.SHIFT_WITHOUT_CYCLE_SHIFT);
+					}
 				}
-				
+
 				log.debug("Adding consultations");
-				for (Doctor doctor : day.getConsultations()) {
-					log.debug("The doctor " + doctor + " has a consultation");
-					cell = row.createCell(currCol);
-					cell.setCellValue(doctor.getLastNames());
-					cell.setCellStyle(consultationStyle);
-					currCol += 1;
+				for (int i = 0; i < doctors.size(); i++) {
+					if (matrix.hasConsultation(i, day)) {
+						row.add(doctors.get(i).getLastNames(), CellKind.CONSULTATION);
+					}
 				}
 			}
-			
-			maxGeneratedCols = currCol > maxGeneratedCols ? currCol : maxGeneratedCols;
-			currCol = 1;
+
+			layout.rows.add(row);
+			int generatedCols = row.lastNames.size() + 1;
+			layout.maxGeneratedCols = generatedCols > layout.maxGeneratedCols ? generatedCols
+					: layout.maxGeneratedCols;
 		}
-		
+		return layout;
+	}
+
+	/**
+	 * Add a sheet, named after the month of the schedule, to the workbook
+	 */
+	private void writeSheet(Workbook workbook, Styles styles, SheetLayout layout) {
+		log.info("Writing the sheet of " + layout.yearMonth);
+		Sheet sheet = workbook.createSheet(layout.yearMonth.toString());
+
+		log.debug("Starting to add data to the sheet");
+		for (RowLayout rowLayout : layout.rows) {
+			Row row = sheet.createRow(rowLayout.day - 1);
+			Cell cell = row.createCell(0);
+			cell.setCellValue(rowLayout.day);
+			if (rowLayout.isWorkingDay) {
+				cell.setCellStyle(styles.cycleShiftStyle);
+			}
+			for (int i = 0; i < rowLayout.lastNames.size(); i++) {
+				cell = row.createCell(i + 1);
+				cell.setCellValue(rowLayout.lastNames.get(i));
+				if (rowLayout.isWorkingDay) {
+					cell.setCellStyle(styles.of(rowLayout.kinds.get(i)));
+				}
+			}
+			if (!rowLayout.isWorkingDay) {
+				log.debug("The day " + rowLayout.day + " is not a working day");
+				row.setRowStyle(styles.nonWorkingDayStyle);
+			}
+		}
+
 		// Configure columns
 		sheet.setColumnWidth(0, firstColWidth);
-		sheet.setDefaultColumnStyle(0, baseStyle);
-		log.debug("The maximum columns generated in a row are: " + maxGeneratedCols);
-		for (int i = 1; i < maxGeneratedCols; i++) {
+		sheet.setDefaultColumnStyle(0, styles.baseStyle);
+		log.debug("The maximum columns generated in a row are: " + layout.maxGeneratedCols);
+		for (int i = 1; i < layout.maxGeneratedCols; i++) {
 			sheet.setColumnWidth(i, colWidth);
-			sheet.setDefaultColumnStyle(i, baseStyle);
+			sheet.setDefaultColumnStyle(i, styles.baseStyle);
 		}
-		
-		log.info("Excel generation finished. Writing the workbook to an output stream");
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-		workbook.write(outputStream);
-		workbook.close();
-
-		
-		return outputStream;
 	}
+
 	
-	public Schedule fromExcel(InputStream inputStream, boolean isXlsx) {
-		// TODO
-		return null;
+	/**
+	 * Convert an excel file, with the layout created by
+	 * {@link #writeExcel(Schedule, boolean, OutputStream)}, to a {@link Schedule}.
+	 * 
+	 * The file is read as a stream of events (SAX for xlsx files and the HSSF
+	 * event API for xls files), so it is never loaded in memory as a whole. The
+	 * doctors are found by their last names, using an index created once per
+	 * import.
+	 * 
+	 * @param inputStream The content of the file. It is copied to a temporary file
+	 *                    so that it can be read without loading it in memory
+	 * @param isXlsx      Whether the file is a xlsx or a xls file
+	 * @param yearMonth   The month of the schedule
+	 * @return The schedule contained in the file
+	 * @throws ScheduleImportException if the file cannot be read or contains
+	 *                                 errors. It contains the cells where the
+	 *                                 errors were found
+	 */
+	public Schedule fromExcel(InputStream inputStream, boolean isXlsx, YearMonth yearMonth) throws IOException {
+		log.info("Request to convert from excel the schedule of " + yearMonth);
+		List<Doctor> doctors = new LinkedList<>();
+		for (EntityModel<Doctor> doctorResource : doctorService.getDoctors()) {
+			doctors.add(doctorResource.getContent());
+		}
+		ScheduleImport scheduleImport = new ScheduleImport(yearMonth, doctors, importMaxErrors);
+
+		Path file = Files.createTempFile("schedule-import-", isXlsx ? ".xlsx" : ".xls");
+		try {
+			Files.copy(inputStream, file, StandardCopyOption.REPLACE_EXISTING);
+			log.debug("The file has been copied to " + file);
+			if (isXlsx) {
+				XlsxScheduleReader.read(file.toFile(), scheduleImport);
+			} else {
+				XlsScheduleReader.read(file.toFile(), scheduleImport);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+		return scheduleImport.build();
 	}
 }
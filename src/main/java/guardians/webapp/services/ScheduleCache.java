@@ -0,0 +1,243 @@
+package guardians.webapp.services;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import guardians.webapp.model.Schedule;
+import guardians.webapp.model.ScheduleSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class keeps in memory the {@link Schedule} resources received from the
+ * REST service, indexed by their {@link YearMonth}.
+ *
+ * How long a schedule is kept depends on its status. A confirmed schedule can no
+ * longer change, so it is only evicted when the maximum number of schedules is
+ * reached. Schedules with any other status (e.g. being generated or pending
+ * confirmation) are only kept for a short time.
+ *
+ * The list of schedules contains schedules with any status, so it is also only
+ * kept for a short time. The same applies to the sorted summaries of the
+ * schedules shown in the list page, which are derived from it, and to the
+ * months known not to have a schedule.
+ *
+ * The hits and misses of the caches are published with the names "schedules",
+ * "scheduleList", "scheduleSummaries" and "missingSchedules".
+ *
+ * @author miggoncan
+ */
+@Component
+@Slf4j
+public class ScheduleCache {
+	@Autowired
+	private MeterRegistry meterRegistry;
+	@Autowired
+	private RenderedExcelCache renderedExcelCache;
+	@Autowired
+	private DoctorShiftIndex doctorShiftIndex;
+
+	@Value("${guardians.cache.schedules.unconfirmed-ttl}")
+	private Long unconfirmedTtl;
+	@Value("${guardians.cache.schedules.max-size}")
+	private Long maxSize;
+
+	private static final String CONFIRMED_STATUS = "CONFIRMED";
+	/**
+	 * The key of the only entry of scheduleList
+	 */
+	private static final String SCHEDULE_LIST_KEY = "schedules";
+	/**
+	 * The webapp is usually reached through a single base URI
+	 */
+	private static final long SUMMARIES_MAX_SIZE = 4;
+
+	private Cache<YearMonth, EntityModel<Schedule>> schedules;
+	private Cache<String, CollectionModel<EntityModel<Schedule>>> scheduleList;
+	/**
+	 * The summaries are indexed by the base URI of their links
+	 */
+	private Cache<String, List<ScheduleSummary>> scheduleSummaries;
+	/**
+	 * The months known not to have a schedule. The value is not used
+	 */
+	private Cache<YearMonth, Boolean> missingSchedules;
+
+	/**
+	 * This class decides for how long a schedule is kept, given its status
+	 */
+	private class StatusExpiry implements Expiry<YearMonth, EntityModel<Schedule>> {
+		@Override
+		public long expireAfterCreate(YearMonth key, EntityModel<Schedule> value, long currentTime) {
+			return this.expiryFor(value);
+		}
+
+		@Override
+		public long expireAfterUpdate(YearMonth key, EntityModel<Schedule> value, long currentTime,
+				long currentDuration) {
+			// The status may have changed
+			return this.expiryFor(value);
+		}
+
+		@Override
+		public long expireAfterRead(YearMonth key, EntityModel<Schedule> value, long currentTime,
+				long currentDuration) {
+			return currentDuration;
+		}
+
+		/**
+		 * @return The number of nanoseconds the schedule should be kept
+		 */
+		private long expiryFor(EntityModel<Schedule> value) {
+			if (isConfirmed(value)) {
+				return Long.MAX_VALUE;
+			}
+			return TimeUnit.MILLISECONDS.toNanos(unconfirmedTtl);
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		schedules = Caffeine.newBuilder()
+				.expireAfter(new StatusExpiry())
+				.maximumSize(maxSize)
+				.recordStats()
+				.build();
+		scheduleList = Caffeine.newBuilder()
+				.expireAfterWrite(unconfirmedTtl, TimeUnit.MILLISECONDS)
+				.maximumSize(1)
+				.recordStats()
+				.build();
+		scheduleSummaries = Caffeine.newBuilder()
+				.expireAfterWrite(unconfirmedTtl, TimeUnit.MILLISECONDS)
+				.maximumSize(SUMMARIES_MAX_SIZE)
+				.recordStats()
+				.build();
+		missingSchedules = Caffeine.newBuilder()
+				.expireAfterWrite(unconfirmedTtl, TimeUnit.MILLISECONDS)
+				.maximumSize(maxSize)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, schedules, "schedules");
+		CaffeineCacheMetrics.monitor(meterRegistry, scheduleList, "scheduleList");
+		CaffeineCacheMetrics.monitor(meterRegistry, scheduleSummaries, "scheduleSummaries");
+		CaffeineCacheMetrics.monitor(meterRegistry, missingSchedules, "missingSchedules");
+	}
+
+	/**
+	 * @return The list of all the schedules, or null if it is not cached
+	 */
+	@Nullable
+	public CollectionModel<EntityModel<Schedule>> getSchedules() {
+		return scheduleList.getIfPresent(SCHEDULE_LIST_KEY);
+	}
+
+	public void putSchedules(CollectionModel<EntityModel<Schedule>> scheduleResources) {
+		log.debug("Caching the list of schedules");
+		scheduleList.put(SCHEDULE_LIST_KEY, scheduleResources);
+		// The summaries have to be derived from the new list
+		scheduleSummaries.invalidateAll();
+	}
+
+	/**
+	 * Get the sorted summaries of the schedules, creating them if they are not
+	 * cached
+	 *
+	 * @param baseUri The base URI of the links of the summaries
+	 * @param project Creates the summaries from the list of schedules. It is run
+	 *                inside the cache of summaries, so it must not request the
+	 *                list, nor use this class in any other way
+	 * @return The cached or created summaries
+	 */
+	public List<ScheduleSummary> getScheduleSummaries(String baseUri,
+			Function<String, List<ScheduleSummary>> project) {
+		return scheduleSummaries.get(baseUri, project);
+	}
+
+	/**
+	 * @param yearMonth The month of the schedule
+	 * @return The schedule, or null if it is not cached
+	 */
+	@Nullable
+	public EntityModel<Schedule> getSchedule(YearMonth yearMonth) {
+		return schedules.getIfPresent(yearMonth);
+	}
+
+	/**
+	 * @return true if the REST service answered recently that the month does not
+	 *         have a schedule
+	 */
+	public boolean isMissing(YearMonth yearMonth) {
+		return missingSchedules.getIfPresent(yearMonth) != null;
+	}
+
+	/**
+	 * Remember, as long as an unconfirmed schedule, that the REST service answered
+	 * that the month does not have a schedule
+	 */
+	public void putMissing(YearMonth yearMonth) {
+		log.debug("The month " + yearMonth + " does not have a schedule");
+		missingSchedules.put(yearMonth, Boolean.TRUE);
+	}
+
+	/**
+	 * Cache a schedule received from the REST service. It is also added to the
+	 * {@link DoctorShiftIndex}
+	 */
+	public void putSchedule(YearMonth yearMonth, EntityModel<Schedule> scheduleResource) {
+		log.debug("Caching the schedule of " + yearMonth + " whose status is "
+				+ scheduleResource.getContent().getStatus());
+		schedules.put(yearMonth, scheduleResource);
+		doctorShiftIndex.index(scheduleResource.getContent());
+	}
+
+	/**
+	 * Forget the schedule of the given month (or that it was missing), as well as
+	 * the list of schedules, its summaries, the excel files created from the
+	 * schedule and its entries in the {@link DoctorShiftIndex}, as the schedule is
+	 * about to change
+	 *
+	 * @param yearMonth The month of the schedule
+	 */
+	public void invalidate(YearMonth yearMonth) {
+		log.debug("Invalidating the cached schedule of " + yearMonth);
+		schedules.invalidate(yearMonth);
+		scheduleList.invalidateAll();
+		scheduleSummaries.invalidateAll();
+		missingSchedules.invalidate(yearMonth);
+		renderedExcelCache.invalidate(yearMonth);
+		doctorShiftIndex.remove(yearMonth);
+	}
+
+	/**
+	 * @return true if the status of the schedule is confirmed, so it will no longer
+	 *         change
+	 */
+	public static boolean isConfirmed(EntityModel<Schedule> scheduleResource) {
+		return isConfirmed(scheduleResource.getContent());
+	}
+
+	/**
+	 * @return true if the status of the schedule is confirmed, so it will no longer
+	 *         change
+	 */
+	public static boolean isConfirmed(@Nullable Schedule schedule) {
+		return schedule != null && CONFIRMED_STATUS.equals(schedule.getStatus());
+	}
+}
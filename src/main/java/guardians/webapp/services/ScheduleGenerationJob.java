@@ -0,0 +1,205 @@
+package guardians.webapp.services;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import guardians.webapp.model.Schedule;
+import guardians.webapp.services.StatusPoller.Poll;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class represents the generation of a {@link Schedule} running in the
+ * background.
+ *
+ * The clients interested in the generation subscribe to it with an
+ * {@link SseEmitter}. They will receive the following events:
+ * <ul>
+ * <li>"progress": Each time the status of the schedule is requested while it
+ * is being generated. It contains the status of the schedule, the number of
+ * times it has been requested, the milliseconds spent waiting for it and the
+ * milliseconds elapsed since the job was created</li>
+ * <li>"completed": When the schedule has been generated. It contains the
+ * scheduleHref where the schedule can be seen</li>
+ * <li>"failed": When the schedule could not be generated. It contains a
+ * message</li>
+ * <li>"cancelled": When the job has been cancelled</li>
+ * </ul>
+ * The last event sent is also sent to clients subscribing afterwards, so that
+ * they do not miss the completion of the job.
+ *
+ * @author miggoncan
+ */
+@Getter
+@Slf4j
+public class ScheduleGenerationJob {
+	public static final String PROGRESS_EVENT = "progress";
+	public static final String COMPLETED_EVENT = "completed";
+	public static final String FAILED_EVENT = "failed";
+	public static final String CANCELLED_EVENT = "cancelled";
+
+	public enum Status {
+		WAITING, RUNNING, COMPLETED, FAILED, CANCELLED
+	}
+
+	private final String id;
+	private final YearMonth yearMonth;
+	/**
+	 * The href of this web application where the schedule will be shown
+	 */
+	private final String scheduleHref;
+	private final long createdAt;
+	private volatile Status status;
+	/**
+	 * When the job finished, in milliseconds since the epoch. It will be null
+	 * until then
+	 */
+	private volatile Long finishedAt;
+
+	/**
+	 * The subscribers and the last event sent to them are published while holding
+	 * the lock of this job, so they are not exposed
+	 */
+	@Getter(AccessLevel.NONE)
+	private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+	@Getter(AccessLevel.NONE)
+	private String lastEventName;
+	@Getter(AccessLevel.NONE)
+	private Map<String, Object> lastEventData;
+
+	public ScheduleGenerationJob(String id, YearMonth yearMonth, String scheduleHref) {
+		this.id = id;
+		this.yearMonth = yearMonth;
+		this.scheduleHref = scheduleHref;
+		this.createdAt = System.currentTimeMillis();
+		this.status = Status.WAITING;
+	}
+
+	public boolean isFinished() {
+		return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+	}
+
+	/**
+	 * @param emitter The emitter that will receive the events of this job. If the
+	 *                job has already finished, the final event is sent and the
+	 *                emitter is completed
+	 */
+	public synchronized void subscribe(SseEmitter emitter) {
+		log.debug("New subscriber to the job " + id);
+		if (lastEventName != null && !this.send(emitter, lastEventName, lastEventData)) {
+			return;
+		}
+		if (this.isFinished()) {
+			emitter.complete();
+			return;
+		}
+		emitter.onCompletion(() -> emitters.remove(emitter));
+		emitter.onTimeout(() -> emitters.remove(emitter));
+		emitters.add(emitter);
+	}
+
+	/**
+	 * @return false if the job cannot be run, as it has already been cancelled
+	 */
+	synchronized boolean running() {
+		if (this.isFinished()) {
+			return false;
+		}
+		this.status = Status.RUNNING;
+		return true;
+	}
+
+	synchronized void progress(Poll<String> poll) {
+		if (this.isFinished()) {
+			return;
+		}
+		Map<String, Object> data = new HashMap<>();
+		data.put("status", poll.getValue());
+		data.put("polls", poll.getPolls());
+		data.put("waitedMillis", poll.getTotalWait());
+		data.put("elapsedMillis", System.currentTimeMillis() - createdAt);
+		this.publish(PROGRESS_EVENT, data);
+	}
+
+	synchronized void completed() {
+		if (this.isFinished()) {
+			return;
+		}
+		log.info("The job " + id + " has completed");
+		this.status = Status.COMPLETED;
+		this.finishedAt = System.currentTimeMillis();
+		Map<String, Object> data = new HashMap<>();
+		data.put("scheduleHref", scheduleHref);
+		this.publish(COMPLETED_EVENT, data);
+		this.completeEmitters();
+	}
+
+	synchronized void failed(String message) {
+		if (this.isFinished()) {
+			return;
+		}
+		log.info("The job " + id + " has failed: " + message);
+		this.status = Status.FAILED;
+		this.finishedAt = System.currentTimeMillis();
+		Map<String, Object> data = new HashMap<>();
+		data.put("message", message);
+		this.publish(FAILED_EVENT, data);
+		this.completeEmitters();
+	}
+
+	/**
+	 * @return false if the job had already finished, so it could not be cancelled
+	 */
+	synchronized boolean cancelled() {
+		if (this.isFinished()) {
+			return false;
+		}
+		log.info("The job " + id + " has been cancelled");
+		this.status = Status.CANCELLED;
+		this.finishedAt = System.currentTimeMillis();
+		this.publish(CANCELLED_EVENT, new HashMap<>());
+		this.completeEmitters();
+		return true;
+	}
+
+	private void publish(String eventName, Map<String, Object> data) {
+		log.debug("Sending event " + eventName + " of job " + id + ": " + data);
+		this.lastEventName = eventName;
+		this.lastEventData = data;
+		for (SseEmitter emitter : emitters) {
+			if (!this.send(emitter, eventName, data)) {
+				emitters.remove(emitter);
+			}
+		}
+	}
+
+	private void completeEmitters() {
+		for (SseEmitter emitter : emitters) {
+			emitter.complete();
+		}
+		emitters.clear();
+	}
+
+	/**
+	 * @return false if the event could not be sent, e.g. because the client has
+	 *         gone away
+	 */
+	private boolean send(SseEmitter emitter, String eventName, Map<String, Object> data) {
+		try {
+			emitter.send(SseEmitter.event().name(eventName).data(data, MediaType.APPLICATION_JSON));
+			return true;
+		} catch (IOException | IllegalStateException e) {
+			log.debug("The event could not be sent to a subscriber of job " + id + ": " + e);
+			emitter.completeWithError(e);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package guardians.webapp.services;
+
+import java.time.YearMonth;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import guardians.webapp.model.Calendar;
+import guardians.webapp.model.Schedule;
+import guardians.webapp.services.StatusPoller.PollTimeoutException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class runs the generation of {@link Schedule}s in the background, so
+ * that the request asking for a new schedule does not have to wait for it.
+ *
+ * Each generation is tracked as a {@link ScheduleGenerationJob} with an id.
+ * Finished jobs are forgotten after some time. The number of generations
+ * running at the same time, and waiting to run, is bounded. The metrics of the
+ * pool are published with the name "guardians.schedule-generation".
+ *
+ * @author miggoncan
+ */
+@Service
+@Slf4j
+public class ScheduleGenerationJobs {
+	@Autowired
+	private ScheduleService scheduleService;
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${guardians.schedule-generation.threads}")
+	private Integer threads;
+	@Value("${guardians.schedule-generation.queue-capacity}")
+	private Integer queueCapacity;
+	@Value("${guardians.schedule-generation.retention}")
+	private Long retention;
+
+	private final Map<String, ScheduleGenerationJob> jobs = new ConcurrentHashMap<>();
+	/**
+	 * The futures of the jobs that have not finished yet. They are used to cancel
+	 * the jobs
+	 */
+	private final Map<String, Future<?>> futures = new ConcurrentHashMap<>();
+	private ExecutorService executor;
+
+	@PostConstruct
+	public void init() {
+		log.info("Creating the schedule generation executor with " + threads + " threads");
+		ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("schedule-generation-"),
+				new ThreadPoolExecutor.AbortPolicy());
+		threadPool.allowCoreThreadTimeOut(true);
+		this.executor = ExecutorServiceMetrics.monitor(meterRegistry, threadPool, "guardians.schedule-generation");
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		log.info("Shutting down the schedule generation executor");
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Start generating a {@link Schedule} in the background
+	 *
+	 * @param calendar     The calendar used to generate the schedule
+	 * @param scheduleHref The href of this web application where the schedule will
+	 *                     be shown
+	 * @return The created job
+	 * @throws RejectedExecutionException if too many schedules are already being
+	 *                                    generated
+	 */
+	public ScheduleGenerationJob submit(Calendar calendar, String scheduleHref) {
+		YearMonth yearMonth = YearMonth.of(calendar.getYear(), calendar.getMonth());
+		ScheduleGenerationJob job = new ScheduleGenerationJob(UUID.randomUUID().toString(), yearMonth,
+				scheduleHref);
+		log.info("Request to submit the job " + job.getId() + " to generate the schedule of " + yearMonth);
+		jobs.put(job.getId(), job);
+		// The future is kept before running it, as a job that finishes quickly
+		// removes its future before execute() returns
+		FutureTask<Void> future = new FutureTask<>(() -> this.run(job, calendar), null);
+		futures.put(job.getId(), future);
+		try {
+			executor.execute(future);
+		} catch (RejectedExecutionException e) {
+			futures.remove(job.getId());
+			jobs.remove(job.getId());
+			throw e;
+		}
+		return job;
+	}
+
+	/**
+	 * Stop a job. If it is running, the thread running it will be interrupted, so
+	 * it stops waiting for the schedule
+	 *
+	 * @param jobId The id of the job
+	 * @return false if the job does not exist or has already finished
+	 */
+	public boolean cancel(String jobId) {
+		log.info("Request to cancel the job " + jobId);
+		ScheduleGenerationJob job = jobs.get(jobId);
+		if (job == null || !job.cancelled()) {
+			return false;
+		}
+		Future<?> future = futures.remove(jobId);
+		if (future != null) {
+			future.cancel(true);
+		}
+		return true;
+	}
+
+	/**
+	 * @param jobId The id of the job
+	 * @return The job, or null if it does not exist or has already been forgotten
+	 */
+	@Nullable
+	public ScheduleGenerationJob getJob(String jobId) {
+		return jobs.get(jobId);
+	}
+
+	/**
+	 * Forget the jobs that finished longer than the retention time ago
+	 */
+	@Scheduled(fixedDelayString = "${guardians.schedule-generation.retention}")
+	public void removeFinishedJobs() {
+		long now = System.currentTimeMillis();
+		Iterator<ScheduleGenerationJob> it = jobs.values().iterator();
+		while (it.hasNext()) {
+			ScheduleGenerationJob job = it.next();
+			if (job.isFinished() && now - job.getFinishedAt() > retention) {
+				log.debug("Forgetting the finished job " + job.getId());
+				it.remove();
+				futures.remove(job.getId());
+			}
+		}
+	}
+
+	private void run(ScheduleGenerationJob job, Calendar calendar) {
+		if (!job.running()) {
+			log.info("The job " + job.getId() + " was cancelled before running");
+			return;
+		}
+		log.info("Running the job " + job.getId());
+		try {
+			EntityModel<Schedule> schedule = scheduleService.newSchedule(calendar, job::progress);
+			if (schedule == null) {
+				job.failed("The schedule could not be generated");
+			} else {
+				job.completed();
+			}
+		} catch (PollTimeoutException e) {
+			log.error("The schedule of job " + job.getId() + " took too long to generate: " + e.getMessage());
+			job.failed(e.getMessage());
+		} catch (RestClientException e) {
+			log.error("Unexpected exception while generating the schedule of job " + job.getId() + ": " + e);
+			job.failed(e.getMessage());
+		} catch (RuntimeException e) {
+			log.error("Unexpected exception while running job " + job.getId(), e);
+			job.failed(e.getMessage());
+		} finally {
+			futures.remove(job.getId());
+		}
+	}
+}
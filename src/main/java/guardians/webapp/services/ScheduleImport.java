@@ -0,0 +1,275 @@
+package guardians.webapp.services;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.springframework.lang.Nullable;
+
+import guardians.webapp.model.Doctor;
+import guardians.webapp.model.Schedule;
+import guardians.webapp.model.ScheduleDay;
+import guardians.webapp.services.ScheduleImportException.ImportError;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class builds a {@link Schedule} from the cells of an excel file, as they
+ * are read one by one. The file is expected to have the layout created by
+ * {@link Schedule2ExcelService}:
+ * <ul>
+ * <li>Each row corresponds to a day of the month, and its first cell contains
+ * the number of the day</li>
+ * <li>The rest of the cells contain the last names of the doctors. The fill
+ * color of each cell tells whether the doctor has a cycle shift, a regular
+ * shift or a consultation</li>
+ * <li>Non working days only contain cycle shifts. Their first cell is not
+ * filled with the cycle shift color, or their row is filled with the non
+ * working day color</li>
+ * </ul>
+ * Only the rows of the days of the month are kept in memory, so the memory used
+ * does not depend on the size of the file.
+ *
+ * @author miggoncan
+ */
+@Slf4j
+class ScheduleImport {
+	private static final short CYCLE_SHIFT_COLOR = IndexedColors.GREY_40_PERCENT.getIndex();
+	private static final short SHIFT_WITH_CYCLE_SHIFT_COLOR = IndexedColors.ORANGE.getIndex();
+	private static final short SHIFT_WITHOUT_CYCLE_SHIFT_COLOR = IndexedColors.LIGHT_ORANGE.getIndex();
+	private static final short CONSULTATION_COLOR = IndexedColors.ROSE.getIndex();
+	private static final short NON_WORKING_DAY_COLOR = IndexedColors.ROYAL_BLUE.getIndex();
+
+	private final YearMonth yearMonth;
+	private final int daysInMonth;
+	/**
+	 * The doctors, indexed by their normalized last names
+	 */
+	private final Map<String, List<Doctor>> doctorsByLastNames;
+	private final int maxErrors;
+
+	/**
+	 * The rows of the days of the month, indexed by the row index
+	 */
+	private final Map<Integer, DayRow> dayRows = new HashMap<>();
+	private final List<ImportError> errors = new ArrayList<>();
+	private boolean tooManyErrors = false;
+
+	private static class DayRow {
+		@Nullable
+		private Short rowColor;
+		@Nullable
+		private String dayValue;
+		private short dayColor = IndexedColors.AUTOMATIC.getIndex();
+		private final List<DoctorCell> doctorCells = new ArrayList<>();
+	}
+
+	private static class DoctorCell {
+		private final int columnIndex;
+		private final String lastNames;
+		private final short color;
+
+		public DoctorCell(int columnIndex, String lastNames, short color) {
+			this.columnIndex = columnIndex;
+			this.lastNames = lastNames;
+			this.color = color;
+		}
+	}
+
+	/**
+	 * @param yearMonth The month of the imported schedule
+	 * @param doctors   The doctors that can appear in the schedule
+	 * @param maxErrors The maximum number of errors reported
+	 */
+	public ScheduleImport(YearMonth yearMonth, Iterable<Doctor> doctors, int maxErrors) {
+		this.yearMonth = yearMonth;
+		this.daysInMonth = yearMonth.lengthOfMonth();
+		this.maxErrors = maxErrors;
+		this.doctorsByLastNames = new HashMap<>();
+		for (Doctor doctor : doctors) {
+			if (doctor.getLastNames() != null) {
+				doctorsByLastNames.computeIfAbsent(normalize(doctor.getLastNames()), k -> new ArrayList<>(1))
+						.add(doctor);
+			}
+		}
+		log.debug("The doctor index contains " + doctorsByLastNames.size() + " last names");
+	}
+
+	/**
+	 * Called when a row has been found
+	 *
+	 * @param rowIndex The index of the row (starting at 0)
+	 * @param rowColor The fill color of the style of the row, or null if the row
+	 *                 does not have a style
+	 */
+	public void row(int rowIndex, @Nullable Short rowColor) {
+		DayRow dayRow = this.getDayRow(rowIndex);
+		if (dayRow != null) {
+			dayRow.rowColor = rowColor;
+		}
+	}
+
+	/**
+	 * Called when a cell with a value has been found
+	 *
+	 * @param rowIndex    The index of the row (starting at 0)
+	 * @param columnIndex The index of the column (starting at 0)
+	 * @param value       The value of the cell, as text
+	 * @param color       The fill color of the style of the cell
+	 */
+	public void cell(int rowIndex, int columnIndex, String value, short color) {
+		if (value == null || value.trim().isEmpty()) {
+			return;
+		}
+		if (rowIndex >= daysInMonth) {
+			this.error(rowIndex, columnIndex, ScheduleImportException.DAY_OUT_OF_MONTH, value);
+			return;
+		}
+		DayRow dayRow = this.getDayRow(rowIndex);
+		if (columnIndex == 0) {
+			dayRow.dayValue = value.trim();
+			dayRow.dayColor = color;
+		} else {
+			dayRow.doctorCells.add(new DoctorCell(columnIndex, value.trim(), color));
+		}
+	}
+
+	/**
+	 * @return The schedule built from the cells received
+	 * @throws ScheduleImportException if any error has been found
+	 */
+	public Schedule build() {
+		Schedule schedule = new Schedule();
+		schedule.setYear(yearMonth.getYear());
+		schedule.setMonth(yearMonth.getMonthValue());
+		TreeSet<ScheduleDay> days = new TreeSet<>();
+		for (int rowIndex = 0; rowIndex < daysInMonth; rowIndex++) {
+			ScheduleDay day = this.buildDay(rowIndex, dayRows.get(rowIndex));
+			if (day != null) {
+				days.add(day);
+			}
+		}
+		schedule.setDays(days);
+
+		if (!errors.isEmpty()) {
+			errors.sort(Comparator.comparing(ImportError::getRow, Comparator.nullsFirst(Comparator.naturalOrder()))
+					.thenComparing(ImportError::getColumn, Comparator.nullsFirst(
+							Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()))));
+			if (tooManyErrors) {
+				errors.add(new ImportError(null, null, ScheduleImportException.TOO_MANY_ERRORS,
+						String.valueOf(maxErrors)));
+			}
+			log.info("The schedule of " + yearMonth + " has " + errors.size() + " errors");
+			throw new ScheduleImportException(errors);
+		}
+		log.debug("The imported schedule is: " + schedule);
+		return schedule;
+	}
+
+	@Nullable
+	private DayRow getDayRow(int rowIndex) {
+		if (rowIndex >= daysInMonth) {
+			return null;
+		}
+		return dayRows.computeIfAbsent(rowIndex, k -> new DayRow());
+	}
+
+	@Nullable
+	private ScheduleDay buildDay(int rowIndex, @Nullable DayRow dayRow) {
+		int dayNumber = rowIndex + 1;
+		if (dayRow == null || dayRow.dayValue == null) {
+			this.error(rowIndex, 0, ScheduleImportException.MISSING_DAY, String.valueOf(dayNumber));
+			return null;
+		}
+		if (!isDay(dayRow.dayValue, dayNumber)) {
+			this.error(rowIndex, 0, ScheduleImportException.INVALID_DAY, dayRow.dayValue);
+			return null;
+		}
+		boolean isWorkingDay = dayRow.dayColor == CYCLE_SHIFT_COLOR
+				&& (dayRow.rowColor == null || dayRow.rowColor != NON_WORKING_DAY_COLOR);
+
+		Set<Doctor> cycle = new LinkedHashSet<>();
+		Set<Doctor> shifts = new LinkedHashSet<>();
+		Set<Doctor> consultations = new LinkedHashSet<>();
+		for (DoctorCell doctorCell : dayRow.doctorCells) {
+			Doctor doctor = this.findDoctor(rowIndex, doctorCell);
+			if (doctor == null) {
+				continue;
+			}
+			Set<Doctor> doctors;
+			if (!isWorkingDay || doctorCell.color == CYCLE_SHIFT_COLOR) {
+				doctors = cycle;
+			} else if (doctorCell.color == SHIFT_WITH_CYCLE_SHIFT_COLOR
+					|| doctorCell.color == SHIFT_WITHOUT_CYCLE_SHIFT_COLOR) {
+				doctors = shifts;
+			} else if (doctorCell.color == CONSULTATION_COLOR) {
+				doctors = consultations;
+			} else {
+				this.error(rowIndex, doctorCell.columnIndex, ScheduleImportException.UNKNOWN_STYLE,
+						doctorCell.lastNames);
+				continue;
+			}
+			if (!doctors.add(doctor)) {
+				this.error(rowIndex, doctorCell.columnIndex, ScheduleImportException.DUPLICATED_DOCTOR,
+						doctorCell.lastNames);
+			}
+		}
+
+		ScheduleDay day = new ScheduleDay();
+		day.setDay(dayNumber);
+		day.setIsWorkingDay(isWorkingDay);
+		day.setCycle(cycle);
+		day.setShifts(isWorkingDay ? shifts : Collections.emptySet());
+		day.setConsultations(isWorkingDay ? consultations : Collections.emptySet());
+		return day;
+	}
+
+	@Nullable
+	private Doctor findDoctor(int rowIndex, DoctorCell doctorCell) {
+		List<Doctor> doctors = doctorsByLastNames.get(normalize(doctorCell.lastNames));
+		if (doctors == null) {
+			this.error(rowIndex, doctorCell.columnIndex, ScheduleImportException.UNKNOWN_DOCTOR,
+					doctorCell.lastNames);
+			return null;
+		}
+		if (doctors.size() > 1) {
+			this.error(rowIndex, doctorCell.columnIndex, ScheduleImportException.AMBIGUOUS_DOCTOR,
+					doctorCell.lastNames);
+			return null;
+		}
+		return doctors.get(0);
+	}
+
+	private void error(int rowIndex, int columnIndex, String code, String value) {
+		if (errors.size() >= maxErrors) {
+			tooManyErrors = true;
+			return;
+		}
+		errors.add(new ImportError(rowIndex, columnIndex, code, value));
+	}
+
+	/**
+	 * @return true if the value of the cell is the given day. Numbers may be read
+	 *         as decimals (e.g. "3.0")
+	 */
+	private static boolean isDay(String value, int dayNumber) {
+		try {
+			double number = Double.parseDouble(value);
+			return number == dayNumber;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static String normalize(String lastNames) {
+		return lastNames.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+}
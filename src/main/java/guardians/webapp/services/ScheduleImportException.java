@@ -0,0 +1,87 @@
+package guardians.webapp.services;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.poi.ss.util.CellReference;
+
+import guardians.webapp.model.Schedule;
+import lombok.Getter;
+
+/**
+ * This exception is thrown when an excel file cannot be converted to a
+ * {@link Schedule}. It contains all the errors found in the file, so they can
+ * be shown to the user at once.
+ *
+ * @author miggoncan
+ */
+@Getter
+public class ScheduleImportException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The codes of the errors. They are used to get the message shown to the user
+	 */
+	public static final String UNREADABLE_FILE = "unreadableFile";
+	public static final String MISSING_DAY = "missingDay";
+	public static final String INVALID_DAY = "invalidDay";
+	public static final String DAY_OUT_OF_MONTH = "dayOutOfMonth";
+	public static final String UNKNOWN_DOCTOR = "unknownDoctor";
+	public static final String AMBIGUOUS_DOCTOR = "ambiguousDoctor";
+	public static final String DUPLICATED_DOCTOR = "duplicatedDoctor";
+	public static final String UNKNOWN_STYLE = "unknownStyle";
+	public static final String TOO_MANY_ERRORS = "tooManyErrors";
+
+	private final List<ImportError> errors;
+
+	/**
+	 * An error found in a certain cell of the file
+	 */
+	@Getter
+	public static class ImportError {
+		/**
+		 * The number of the row, as shown by spreadsheet programs (starting at 1). It
+		 * is null if the error does not refer to a certain row
+		 */
+		private final Integer row;
+		/**
+		 * The name of the column, as shown by spreadsheet programs (e.g. "A"). It is
+		 * null if the error does not refer to a certain column
+		 */
+		private final String column;
+		private final String code;
+		/**
+		 * The value that caused the error, if any
+		 */
+		private final String value;
+
+		/**
+		 * @param rowIndex    The index of the row (starting at 0), or null
+		 * @param columnIndex The index of the column (starting at 0), or null
+		 * @param code        The code of the error
+		 * @param value       The value that caused the error, or null
+		 */
+		public ImportError(Integer rowIndex, Integer columnIndex, String code, String value) {
+			this.row = rowIndex == null ? null : rowIndex + 1;
+			this.column = columnIndex == null ? null : CellReference.convertNumToColString(columnIndex);
+			this.code = code;
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			String cell = (column == null ? "" : column) + (row == null ? "" : row);
+			return (cell.isEmpty() ? "" : cell + ": ") + code + (value == null ? "" : " (" + value + ")");
+		}
+	}
+
+	public ScheduleImportException(List<ImportError> errors) {
+		super("The schedule could not be imported: " + errors);
+		this.errors = Collections.unmodifiableList(errors);
+	}
+
+	public ScheduleImportException(String code, Throwable cause) {
+		super("The schedule could not be imported: " + code, cause);
+		this.errors = Collections.singletonList(new ImportError(null, null, code, null));
+	}
+}
@@ -1,29 +1,38 @@
 package guardians.webapp.services;
 
+import java.io.IOException;
+import java.net.URI;
 import java.time.YearMonth;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.client.Hop;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException.BadRequest;
 import org.springframework.web.client.HttpClientErrorException.NotFound;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import guardians.webapp.model.Calendar;
 import guardians.webapp.model.Schedule;
+import guardians.webapp.services.StatusPoller.Poll;
+import guardians.webapp.services.StatusPoller.PollTimeoutException;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -38,6 +47,37 @@ public class ScheduleService extends MyService {
 	@Value("${api.links.confirmSchedule}")
 	private String confirmScheduleLink;
 	
+	@Value("${api.links.scheduleStatus}")
+	private String scheduleStatusLink;
+	
+	@Value("${guardians.schedule-generation.poll.initial-interval}")
+	private Long pollInitialInterval;
+	@Value("${guardians.schedule-generation.poll.max-interval}")
+	private Long pollMaxInterval;
+	@Value("${guardians.schedule-generation.poll.multiplier}")
+	private Double pollMultiplier;
+	@Value("${guardians.schedule-generation.poll.jitter}")
+	private Double pollJitter;
+	@Value("${guardians.schedule-generation.poll.deadline}")
+	private Long pollDeadline;
+	
+	@Autowired
+	private ScheduleCache scheduleCache;
+	
+	private static final String BEING_GENERATED_STATUS = "BEING_GENERATED";
+	/**
+	 * Only used to read the status of the schedules. No configuration is needed
+	 */
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+	
+	private StatusPoller statusPoller;
+	
+	@PostConstruct
+	public void init() {
+		statusPoller = new StatusPoller(pollInitialInterval, pollMaxInterval, pollMultiplier, pollJitter,
+				pollDeadline);
+	}
+	
 	/**
 	 * This method will return a summary of all existent {@link Calendar}s in the
 	 * REST service. A summarized {@link Calendar} contains the month, year and
@@ -47,13 +87,23 @@ public class ScheduleService extends MyService {
 	 */
 	public CollectionModel<EntityModel<Schedule>> getSchedules() {
 		log.info("Request to get the all schedules");
-		ParameterizedTypeReference<CollectionModel<EntityModel<Schedule>>> schedulesTypeReference = 
-				new ParameterizedTypeReference<CollectionModel<EntityModel<Schedule>>>() {};
-		CollectionModel<EntityModel<Schedule>> scheduleResources = traverson
-				.follow(schedulesLink)
-				.toObject(schedulesTypeReference);
-		log.info("The received resources are: " + scheduleResources);
-		return scheduleResources;
+		CollectionModel<EntityModel<Schedule>> scheduleResources = scheduleCache.getSchedules();
+		if (scheduleResources != null) {
+			log.debug("The schedule resources were cached");
+			return scheduleResources;
+		}
+		// Concurrent requests share the same response
+		return singleFlight.execute(schedulesLink, () -> {
+			ParameterizedTypeReference<CollectionModel<EntityModel<Schedule>>> schedulesTypeReference = 
+					new ParameterizedTypeReference<CollectionModel<EntityModel<Schedule>>>() {};
+			CollectionModel<EntityModel<Schedule>> receivedResources = upstreamMetrics.record(schedulesLink,
+					HttpMethod.GET, () -> traverson
+						.follow(schedulesLink)
+						.toObject(schedulesTypeReference));
+			log.info("The received resources are: " + receivedResources);
+			scheduleCache.putSchedules(receivedResources);
+			return receivedResources;
+		});
 	}
 
 	/**
@@ -65,13 +115,26 @@ public class ScheduleService extends MyService {
 	 */
 	public EntityModel<Schedule> getSchedule(YearMonth yearMonth) {
 		log.info("Request to get schedule of: " + yearMonth);
-		ParameterizedTypeReference<EntityModel<Schedule>> scheduleTypeReference = 
-				new ParameterizedTypeReference<EntityModel<Schedule>>() {};
-		EntityModel<Schedule> scheduleResource = traverson
-				.follow(Hop.rel(scheduleLink).withParameter("yearMonth", yearMonth))
-				.toObject(scheduleTypeReference);
-		log.info("The received resource is: " + scheduleResource);
-		return scheduleResource;
+		EntityModel<Schedule> scheduleResource = scheduleCache.getSchedule(yearMonth);
+		if (scheduleResource != null) {
+			log.debug("The schedule was cached");
+			return scheduleResource;
+		}
+		// Concurrent requests for the same month (e.g. when a schedule is published)
+		// share the same response
+		return singleFlight.execute(scheduleLink, () -> {
+			ParameterizedTypeReference<EntityModel<Schedule>> scheduleTypeReference = 
+					new ParameterizedTypeReference<EntityModel<Schedule>>() {};
+			EntityModel<Schedule> receivedResource = upstreamMetrics.record(scheduleLink, HttpMethod.GET,
+					() -> traverson
+						.follow(Hop.rel(scheduleLink).withParameter("yearMonth", yearMonth))
+						.toObject(scheduleTypeReference));
+			log.info("The received resource is: " + receivedResource);
+			if (receivedResource != null && receivedResource.getContent() != null) {
+				scheduleCache.putSchedule(yearMonth, receivedResource);
+			}
+			return receivedResource;
+		}, yearMonth);
 	}
 
 	/**
@@ -83,6 +146,23 @@ public class ScheduleService extends MyService {
 	 * @return The generated {@link Schedule} resource.
 	 */
 	public EntityModel<Schedule> newSchedule(Calendar calendar) {
+		return this.newSchedule(calendar, poll -> {});
+	}
+
+	/**
+	 * This method will request the generation of a {@link Schedule} provided a
+	 * {@link Calendar}, and wait until it has been generated
+	 * 
+	 * @param calendar This calendar contains the configuration that will be used to
+	 *                 generate the {@link Schedule}
+	 * @param onPoll   It will receive the status of the schedule each time it is
+	 *                 requested while waiting for it to be generated
+	 * @return The generated {@link Schedule} resource, or null if the generation
+	 *         could not be requested or the wait was interrupted
+	 * @throws PollTimeoutException if the schedule is still being generated when
+	 *                              the polling deadline passes
+	 */
+	public EntityModel<Schedule> newSchedule(Calendar calendar, Consumer<Poll<String>> onPoll) {
 		log.info("Request to generate schedule of " + calendar.getYear() + "-" + calendar.getMonth());
 		log.debug("The calendar is: " + calendar);
 
@@ -100,18 +180,16 @@ public class ScheduleService extends MyService {
 		Link linkToPutCalendar = links.get(2).expand(paramsSchedule);
 		log.debug("The link to PUT the calendar is: " + linkToPutCalendar);
 
-		RestTemplate restTemplate = restTemplateBuilder.build();
 		EntityModel<Schedule> schedule = null;
+		// The schedule is about to change, so it can no longer be cached
+		scheduleCache.invalidate(yearMonth);
 
-		HttpHeaders headers = getSessionHeaders();
-
-		HttpEntity<Calendar> req = new HttpEntity<>(headers);
 		// First try to delete the schedule. This allows regenerating a schedule if
 		// it has not already been confirmed
 		log.info("Attempting to delete the schedule if it already exists");
 		try {
 			// TODO this may throw a Forbidden exception if the schedule is confirmed
-			restTemplate.exchange(linkToSchedule.toUri(), HttpMethod.DELETE, req, Object.class);
+			this.exchangeInSession(scheduleLink, linkToSchedule.toUri(), HttpMethod.DELETE, null, Object.class);
 			log.info("The schedule has been deleted");
 		} catch (NotFound e) {
 			log.info("The schedule did not exist");
@@ -119,18 +197,20 @@ public class ScheduleService extends MyService {
 
 		// First, we will try to POST the calendar. If it fails, we will try to PUT it
 		boolean calendarPersistedCorrectly = false;
-		req = new HttpEntity<Calendar>(calendar, headers);
 		ResponseEntity<Calendar> resp = null;
 		try {
 			log.info("Attemting to POST calendar");
-			resp = restTemplate.exchange(linkToPostCalendar.toUri(), HttpMethod.POST, req, Calendar.class);
+			resp = this.exchangeInSession(calendarsLink, linkToPostCalendar.toUri(), HttpMethod.POST, calendar,
+					Calendar.class);
 			log.debug("The response calendar is: " + resp);
 			log.debug("The persisted calendar is:  " + resp.getBody());
 			calendarPersistedCorrectly = true;
 		} catch (BadRequest e) {
 			log.info("Bad request: " + e);
 			log.info("Attempting to PUT calendar");
-			resp = restTemplate.exchange(linkToPutCalendar.toUri(), HttpMethod.PUT, req, Calendar.class);
+			upstreamMetrics.countFallback("newSchedule", HttpMethod.POST, HttpMethod.PUT);
+			resp = this.exchangeInSession(calendarLink, linkToPutCalendar.toUri(), HttpMethod.PUT, calendar,
+					Calendar.class);
 			log.debug("The response calendar is: " + resp);
 			log.debug("The persisted calendar is:  " + resp.getBody());
 			calendarPersistedCorrectly = true;
@@ -139,29 +219,83 @@ public class ScheduleService extends MyService {
 		}
 
 		if (calendarPersistedCorrectly) {
-			// Request to start generating schedule
-			req = new HttpEntity<>(headers);
-			restTemplate.exchange(linkToSchedule.getHref(), HttpMethod.POST, req, Object.class);
 			// This type is used to decode the response schedule
 			ParameterizedTypeReference<EntityModel<Schedule>> scheduleTypeReference = 
 					new ParameterizedTypeReference<EntityModel<Schedule>>() {};
+			// Request to start generating schedule
+			EntityModel<Schedule> scheduleBeingGenerated = this.exchangeInSession(scheduleLink,
+					linkToSchedule.toUri(), HttpMethod.POST, null, scheduleTypeReference).getBody();
+			URI linkToStatus = this.getLinkToStatus(scheduleBeingGenerated, linkToSchedule);
+			log.debug("The status of the schedule will be requested to: " + linkToStatus);
 			// After the request is accepted, we have to wait for the schedule to generate
 			try {
-				do {
-					log.info("Wating for the schedule to generate");
-					Thread.sleep(500);
-					log.info("Trying to request generated schedule");
-					schedule = restTemplate.exchange(linkToSchedule.toUri(), HttpMethod.GET, req, scheduleTypeReference)
-							.getBody();
-					log.debug("The received schedule is: " + schedule);
-				} while (schedule.getContent().getStatus().equals("BEING_GENERATED"));
+				log.info("Wating for the schedule to generate");
+				statusPoller.poll(() -> this.requestStatus(linkToStatus),
+						status -> !BEING_GENERATED_STATUS.equals(status), onPoll);
+				log.info("Trying to request generated schedule");
+				schedule = this.exchangeInSession(scheduleLink, linkToSchedule.toUri(), HttpMethod.GET, null,
+						scheduleTypeReference).getBody();
+				log.debug("The received schedule is: " + schedule);
 			} catch (InterruptedException e) {
-				log.error("Interrupted: " + e);
+				log.info("Stopped waiting for the schedule of " + yearMonth + " to generate, as it was interrupted");
+				schedule = null;
+				Thread.currentThread().interrupt();
+			} finally {
+				// Requests received while the schedule was being generated may have cached it
+				scheduleCache.invalidate(yearMonth);
 			}
 		}
 
 		return schedule;
 	}
+	
+	/**
+	 * @param scheduleResource The schedule received when requesting its generation.
+	 *                         It may be null
+	 * @param linkToSchedule   The link to the whole schedule
+	 * @return The link to the status of the schedule, if it is known. Otherwise,
+	 *         the link to the whole schedule
+	 */
+	private URI getLinkToStatus(@Nullable EntityModel<Schedule> scheduleResource, Link linkToSchedule) {
+		if (scheduleResource == null) {
+			log.debug("The schedule was not received. Requesting it to find the link to its status");
+			ParameterizedTypeReference<EntityModel<Schedule>> scheduleTypeReference = 
+					new ParameterizedTypeReference<EntityModel<Schedule>>() {};
+			scheduleResource = this.exchangeInSession(scheduleLink, linkToSchedule.toUri(), HttpMethod.GET, null,
+					scheduleTypeReference).getBody();
+		}
+		Optional<Link> linkToStatus = scheduleResource == null 
+				? Optional.empty() 
+				: scheduleResource.getLink(scheduleStatusLink);
+		if (!linkToStatus.isPresent()) {
+			log.warn("The schedule does not contain the " + scheduleStatusLink + " link. The whole schedule will be polled");
+			return linkToSchedule.toUri();
+		}
+		return linkToStatus.get().toUri();
+	}
+	
+	/**
+	 * @param linkToStatus The link to the status of a schedule
+	 * @return The status of the schedule. The response can either be an object
+	 *         with a "status" attribute, or the status itself
+	 */
+	private String requestStatus(URI linkToStatus) {
+		String body = this.exchangeInSession(scheduleStatusLink, linkToStatus, HttpMethod.GET, null, String.class)
+				.getBody();
+		if (body == null) {
+			return null;
+		}
+		try {
+			JsonNode statusNode = objectMapper.readTree(body);
+			if (statusNode.isObject()) {
+				statusNode = statusNode.path("status");
+			}
+			return statusNode.isMissingNode() ? null : statusNode.asText();
+		} catch (IOException e) {
+			// The status was not sent as JSON
+			return body.trim();
+		}
+	}
 
 	public void confirmSchedule(YearMonth yearMonth) {
 		log.info("Request to confirm schedule: " + yearMonth);
@@ -170,16 +304,39 @@ public class ScheduleService extends MyService {
 		if (!linkToConfirmSchedule.isPresent()) {
 			log.warn("Trying to confirm a schedule that cannot be confirmed: " + yearMonth);
 		} else {
-			HttpEntity<Calendar> req = new HttpEntity<>(getSessionHeaders());
-			RestTemplate restTemplate = restTemplateBuilder.build();
 			log.info("Attempting to confirm the schedule");
-			restTemplate.exchange(linkToConfirmSchedule.get().toUri(), HttpMethod.PUT, req, Object.class);
+			this.exchangeInSession(confirmScheduleLink, linkToConfirmSchedule.get().toUri(), HttpMethod.PUT, null,
+					Object.class);
 			log.info("If it existed, the schedule has been confirmed");
+			scheduleCache.invalidate(yearMonth);
 		}
 	}
 	
+	/**
+	 * Send a modified {@link Schedule} to the REST service to persist it
+	 * 
+	 * @param yearMonth The month of the schedule
+	 * @param schedule  The modified schedule
+	 * @return The persisted schedule resource
+	 */
 	public EntityModel<Schedule> updateSchedule(YearMonth yearMonth, Schedule schedule) {
-		// TODO
-		return null;
+		log.info("Request to update schedule: " + yearMonth);
+		log.debug("The new schedule is: " + schedule);
+		Map<String, Object> paramsSchedule = new HashMap<>();
+		paramsSchedule.put("yearMonth", yearMonth.toString());
+		Link linkToSchedule = this.getRootRequiredLinks(scheduleLink).get(0).expand(paramsSchedule);
+		log.debug("The link to PUT the schedule is: " + linkToSchedule);
+		
+		ParameterizedTypeReference<EntityModel<Schedule>> scheduleTypeReference = 
+				new ParameterizedTypeReference<EntityModel<Schedule>>() {};
+		EntityModel<Schedule> persistedSchedule;
+		try {
+			persistedSchedule = this.exchangeInSession(scheduleLink, linkToSchedule.toUri(), HttpMethod.PUT,
+					schedule, scheduleTypeReference).getBody();
+			log.debug("The persisted schedule is: " + persistedSchedule);
+		} finally {
+			scheduleCache.invalidate(yearMonth);
+		}
+		return persistedSchedule;
 	}
 }
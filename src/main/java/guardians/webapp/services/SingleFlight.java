@@ -0,0 +1,133 @@
+package guardians.webapp.services;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class coalesces identical reads from the REST service that are run at
+ * the same time. The first caller of a read sends the request, and the callers
+ * that ask for the same read while it is in flight wait for it and share its
+ * result (or its exception), instead of sending their own request.
+ *
+ * A read is identified by the rel of the link followed and the parameters used
+ * to expand it. Once it has finished, the next caller sends a new request, so
+ * callers are expected to cache the result before it finishes.
+ *
+ * The callers that sent the request and the ones that were coalesced are
+ * counted with the name "guardians.upstream.single-flight", tagged by the rel
+ * and the role of the caller ("leader" or "coalesced"). The parameters are not
+ * used as tags, so the number of metrics does not grow with them. The number
+ * of reads in flight is published with the name
+ * "guardians.upstream.single-flight.in-flight".
+ *
+ * @author miggoncan
+ */
+@Component
+@Slf4j
+public class SingleFlight {
+	public static final String CALLS_METRIC = "guardians.upstream.single-flight";
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private final ConcurrentMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	public void init() {
+		Gauge.builder(CALLS_METRIC + ".in-flight", inFlight, ConcurrentMap::size)
+				.description("Reads from the REST service currently in flight")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * The rel and parameters of a read
+	 */
+	private static final class Key {
+		private final String rel;
+		private final Object[] params;
+		private final int hash;
+
+		public Key(String rel, Object[] params) {
+			this.rel = rel;
+			this.params = params;
+			this.hash = 31 * rel.hashCode() + Arrays.hashCode(params);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return rel.equals(other.rel) && Arrays.equals(params, other.params);
+		}
+
+		@Override
+		public String toString() {
+			return rel + Arrays.toString(params);
+		}
+	}
+
+	/**
+	 * Run a read, or wait for the identical one in flight
+	 *
+	 * @param rel    The rel of the link followed
+	 * @param read   The read. It is run by the calling thread if no identical read
+	 *               is in flight
+	 * @param params The parameters used to expand the link. They have to
+	 *               implement equals and hashCode
+	 * @return The result of the read
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String rel, Supplier<T> read, Object... params) {
+		Key key = new Key(rel, params);
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			log.debug("The read " + key + " is already in flight. Waiting for it");
+			this.count(rel, "coalesced");
+			return (T) UpstreamExecutor.join(existing);
+		}
+		this.count(rel, "leader");
+		try {
+			T result = read.get();
+			future.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, future);
+		}
+	}
+
+	private void count(String rel, String role) {
+		Counter.builder(CALLS_METRIC)
+				.description("Reads from the REST service, by whether they were sent or coalesced")
+				.tag("rel", rel)
+				.tag("role", role)
+				.register(meterRegistry)
+				.increment();
+	}
+}
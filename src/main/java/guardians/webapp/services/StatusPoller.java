@@ -0,0 +1,139 @@
+package guardians.webapp.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class repeatedly requests a value until it satisfies a condition, e.g.
+ * until the status of a resource stops being "BEING_GENERATED".
+ *
+ * The time waited between requests starts at the initial interval, and is
+ * multiplied after each request until it reaches the maximum interval. Each
+ * wait is randomly increased or decreased by up to the jitter fraction, so
+ * that clients polling at the same time spread their requests.
+ *
+ * Polling stops with a {@link PollTimeoutException} once the deadline has
+ * passed, and with an {@link InterruptedException} if the polling thread is
+ * interrupted, which is how polling is cancelled.
+ *
+ * @author miggoncan
+ */
+@Slf4j
+public class StatusPoller {
+	private final long initialInterval;
+	private final long maxInterval;
+	private final double multiplier;
+	private final double jitter;
+	private final long deadline;
+
+	/**
+	 * @param initialInterval Milliseconds waited before the first request
+	 * @param maxInterval     Maximum milliseconds waited between two requests
+	 * @param multiplier      Factor applied to the interval after each request
+	 * @param jitter          Fraction (between 0 and 1) each wait may be randomly
+	 *                        increased or decreased
+	 * @param deadline        Maximum milliseconds polling can last
+	 */
+	public StatusPoller(long initialInterval, long maxInterval, double multiplier, double jitter,
+			long deadline) {
+		if (initialInterval <= 0 || maxInterval < initialInterval || multiplier < 1 || jitter < 0
+				|| jitter >= 1 || deadline <= 0) {
+			throw new IllegalArgumentException("Invalid polling configuration");
+		}
+		this.initialInterval = initialInterval;
+		this.maxInterval = maxInterval;
+		this.multiplier = multiplier;
+		this.jitter = jitter;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * The result of a request done while polling
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	public static class Poll<T> {
+		private final T value;
+		/**
+		 * The number of requests done so far, including this one
+		 */
+		private final int polls;
+		/**
+		 * The milliseconds spent since polling started
+		 */
+		private final long totalWait;
+	}
+
+	/**
+	 * This exception is thrown when the deadline passes before the polled value
+	 * satisfies the condition
+	 */
+	@Getter
+	public static class PollTimeoutException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private final int polls;
+		private final long totalWait;
+
+		public PollTimeoutException(int polls, long totalWait) {
+			super("Gave up polling after " + polls + " requests and " + totalWait + " ms");
+			this.polls = polls;
+			this.totalWait = totalWait;
+		}
+	}
+
+	/**
+	 * Request a value until it satisfies the given condition
+	 *
+	 * @param request Requests the value. It is called after each wait
+	 * @param isDone  Decides whether polling can stop
+	 * @param onPoll  It will receive the result of each request
+	 * @return The result of the last request, whose value satisfies isDone
+	 * @throws InterruptedException if the thread is interrupted while polling
+	 * @throws PollTimeoutException if the deadline passes before isDone is
+	 *                              satisfied
+	 */
+	public <T> Poll<T> poll(Supplier<T> request, Predicate<T> isDone, Consumer<Poll<T>> onPoll)
+			throws InterruptedException {
+		long start = System.currentTimeMillis();
+		long interval = initialInterval;
+		int polls = 0;
+		while (true) {
+			long elapsed = System.currentTimeMillis() - start;
+			long remaining = deadline - elapsed;
+			if (remaining <= 0) {
+				log.warn("The deadline has passed after " + polls + " polls");
+				throw new PollTimeoutException(polls, elapsed);
+			}
+			Thread.sleep(Math.min(this.withJitter(interval), remaining));
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+
+			T value = request.get();
+			polls++;
+			Poll<T> poll = new Poll<>(value, polls, System.currentTimeMillis() - start);
+			log.debug("Poll " + polls + " after " + poll.getTotalWait() + " ms: " + value);
+			onPoll.accept(poll);
+			if (isDone.test(value)) {
+				log.info("Polling finished after " + polls + " polls and " + poll.getTotalWait() + " ms");
+				return poll;
+			}
+			interval = Math.min((long) (interval * multiplier), maxInterval);
+		}
+	}
+
+	private long withJitter(long interval) {
+		if (jitter == 0) {
+			return interval;
+		}
+		double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+		return Math.max(1, (long) (interval * factor));
+	}
+}
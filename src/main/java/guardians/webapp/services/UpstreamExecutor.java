@@ -0,0 +1,91 @@
+package guardians.webapp.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class is responsible for running requests to the REST service
+ * asynchronously, so that independent requests can be sent at the same time.
+ *
+ * The number of threads and of waiting requests is bounded. When all of them
+ * are in use, the request is run by the calling thread. The metrics of the pool
+ * are published with the name "guardians.upstream".
+ *
+ * @author miggoncan
+ */
+@Component
+@Slf4j
+public class UpstreamExecutor {
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${guardians.upstream.executor.threads}")
+	private Integer threads;
+	@Value("${guardians.upstream.executor.queue-capacity}")
+	private Integer queueCapacity;
+
+	private ExecutorService executor;
+
+	@PostConstruct
+	public void init() {
+		log.info("Creating the upstream executor with " + threads + " threads");
+		ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("upstream-"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		threadPool.allowCoreThreadTimeOut(true);
+		this.executor = ExecutorServiceMetrics.monitor(meterRegistry, threadPool, "guardians.upstream");
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		log.info("Shutting down the upstream executor");
+		executor.shutdown();
+	}
+
+	/**
+	 * @param task The task to be run asynchronously
+	 * @return A future that will be completed with the result of the task
+	 */
+	public <T> CompletableFuture<T> supply(Supplier<T> task) {
+		return CompletableFuture.supplyAsync(task, executor);
+	}
+
+	/**
+	 * Wait for a future to complete. If it completes exceptionally, the original
+	 * exception is thrown instead of the {@link CompletionException} wrapping it,
+	 * so that it can be handled as if the task had been run synchronously
+	 *
+	 * @param future The future to wait for
+	 * @return The result of the future
+	 */
+	public static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+}
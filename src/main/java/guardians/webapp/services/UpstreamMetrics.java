@@ -0,0 +1,101 @@
+package guardians.webapp.services;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * This class publishes the metrics of the requests sent to the REST service.
+ *
+ * Each request is timed with the name "guardians.upstream.requests", tagged by
+ * the rel of the link followed, the HTTP method and the outcome of the request
+ * (SUCCESS, CLIENT_ERROR, SERVER_ERROR, IO_ERROR or UNKNOWN). The percentiles
+ * of the timers are configured with the management.metrics.distribution
+ * properties.
+ *
+ * When a resource is persisted with a method and the REST service forces using
+ * another one (e.g. PUT is tried first, and POST is used if the resource does
+ * not exist), it is counted with the name "guardians.upstream.fallbacks".
+ *
+ * @author miggoncan
+ */
+@Component
+public class UpstreamMetrics {
+	public static final String REQUESTS_METRIC = "guardians.upstream.requests";
+	public static final String FALLBACKS_METRIC = "guardians.upstream.fallbacks";
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * Time a request to the REST service
+	 *
+	 * @param rel     The rel of the link the request is sent to
+	 * @param method  The HTTP method of the request
+	 * @param request The request. It is run by the calling thread
+	 * @return The result of the request
+	 */
+	public <T> T record(String rel, HttpMethod method, Supplier<T> request) {
+		Timer.Sample sample = Timer.start(meterRegistry);
+		String outcome = "UNKNOWN";
+		try {
+			T result = request.get();
+			outcome = "SUCCESS";
+			return result;
+		} catch (RuntimeException e) {
+			outcome = outcomeOf(e);
+			throw e;
+		} finally {
+			sample.stop(Timer.builder(REQUESTS_METRIC)
+					.description("Requests sent to the REST service")
+					.tag("rel", String.valueOf(rel))
+					.tag("method", method.name())
+					.tag("outcome", outcome)
+					.register(meterRegistry));
+		}
+	}
+
+	/**
+	 * Count that a resource could not be persisted with a method, and another one
+	 * is used instead
+	 *
+	 * @param operation The operation persisting the resource. E.g.
+	 *                  "saveShiftConfiguration"
+	 * @param from      The method that was rejected
+	 * @param to        The method used instead
+	 */
+	public void countFallback(String operation, HttpMethod from, HttpMethod to) {
+		Counter.builder(FALLBACKS_METRIC)
+				.description("Requests to the REST service repeated with another method")
+				.tag("operation", operation)
+				.tag("from", from.name())
+				.tag("to", to.name())
+				.register(meterRegistry)
+				.increment();
+	}
+
+	private static String outcomeOf(RuntimeException e) {
+		if (e instanceof RestClientResponseException) {
+			int status = ((RestClientResponseException) e).getRawStatusCode();
+			if (status >= 400 && status < 500) {
+				return "CLIENT_ERROR";
+			}
+			if (status >= 500 && status < 600) {
+				return "SERVER_ERROR";
+			}
+			return "UNKNOWN";
+		}
+		if (e instanceof ResourceAccessException) {
+			return "IO_ERROR";
+		}
+		return "UNKNOWN";
+	}
+}
@@ -0,0 +1,135 @@
+package guardians.webapp.services;
+
+import java.net.HttpCookie;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class keeps the session cookies given by the REST service, so that they
+ * can be reused by all the requests sent to it.
+ *
+ * The cookies are only requested again when any of them expires or when the
+ * REST service rejects them (see {@link #reject(HttpHeaders)}).
+ *
+ * @author miggoncan
+ */
+@Component
+@Slf4j
+public class UpstreamSessionManager {
+	@Autowired
+	private RestTemplate restTemplate;
+	@Autowired
+	private UpstreamMetrics upstreamMetrics;
+
+	@Value("${api.uri}")
+	private String restUri;
+	@Value("${api.links.root}")
+	private String rootLink;
+
+	/**
+	 * The current session. It will be null if it has not been created yet or if it
+	 * was rejected
+	 */
+	private volatile UpstreamSession session;
+
+	/**
+	 * The cookies of a session along with the headers needed to send them
+	 */
+	private static class UpstreamSession {
+		private final Map<String, HttpCookie> cookies;
+		private final HttpHeaders headers;
+
+		public UpstreamSession(Map<String, HttpCookie> cookies) {
+			this.cookies = Collections.unmodifiableMap(cookies);
+			HttpHeaders headers = new HttpHeaders();
+			if (!cookies.isEmpty()) {
+				StringBuilder sb = new StringBuilder();
+				for (HttpCookie cookie : cookies.values()) {
+					sb.append(cookie.toString()).append(";");
+				}
+				headers.add(HttpHeaders.COOKIE, sb.toString());
+			}
+			this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+		}
+
+		public boolean hasExpired() {
+			return cookies.values().stream().anyMatch(HttpCookie::hasExpired);
+		}
+	}
+
+	/**
+	 * This method will return the needed headers to make a request to the REST
+	 * service. The session will only be created if there is no valid one
+	 *
+	 * @return The headers that should be used in the request. They cannot be
+	 *         modified
+	 */
+	public HttpHeaders getSessionHeaders() {
+		UpstreamSession current = this.session;
+		if (current == null || current.hasExpired()) {
+			current = this.renew();
+		}
+		return current.headers;
+	}
+
+	/**
+	 * This method should be called when the REST service rejects a request because
+	 * of its session. The next call to {@link #getSessionHeaders()} will create a
+	 * new session.
+	 *
+	 * @param rejectedHeaders The headers, as returned by
+	 *                        {@link #getSessionHeaders()}, of the rejected request
+	 */
+	public synchronized void reject(HttpHeaders rejectedHeaders) {
+		UpstreamSession current = this.session;
+		// If another thread has already renewed the session, it should be kept
+		if (current != null && current.headers == rejectedHeaders) {
+			log.info("The session has been rejected. It will be renewed");
+			this.session = null;
+		}
+	}
+
+	private synchronized UpstreamSession renew() {
+		// Another thread may have already renewed the session while this one was
+		// waiting
+		UpstreamSession current = this.session;
+		if (current != null && !current.hasExpired()) {
+			return current;
+		}
+
+		log.info("Request to create a new session");
+		ResponseEntity<Object> resp = upstreamMetrics.record(rootLink, HttpMethod.GET,
+				() -> restTemplate.getForEntity(restUri, Object.class));
+		log.debug("The response is: " + resp);
+		List<String> cookiesStr = resp.getHeaders().get(HttpHeaders.SET_COOKIE);
+		log.debug("The list of cookies as Strings is: " + cookiesStr);
+		// The cookies are indexed by name. If a cookie is set more than once, only the
+		// last one is kept
+		Map<String, HttpCookie> cookies = new LinkedHashMap<>();
+		if (cookiesStr != null) {
+			for (String cookieStr : cookiesStr) {
+				for (HttpCookie cookie : HttpCookie.parse(cookieStr)) {
+					cookies.remove(cookie.getName());
+					cookies.put(cookie.getName(), cookie);
+				}
+			}
+		}
+		log.debug("The extracted cookies are: " + cookies.values());
+		current = new UpstreamSession(cookies);
+		log.info("The created headers are: " + current.headers);
+		this.session = current;
+		return current;
+	}
+}
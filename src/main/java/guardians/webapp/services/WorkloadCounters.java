@@ -0,0 +1,95 @@
+package guardians.webapp.services;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import guardians.webapp.model.Doctor;
+
+/**
+ * This class adds up the workloads of several months. The counters of each
+ * doctor are kept in arrays, grown as new doctors are found, so adding a month
+ * does not create any object per doctor already known.
+ *
+ * It is not thread safe. Each thread adds up its own months, and the results
+ * are then merged.
+ *
+ * @author miggoncan
+ */
+class WorkloadCounters {
+	private final Map<Doctor, Integer> doctorIndexes = new HashMap<>();
+	private Doctor[] doctors = new Doctor[16];
+	private int[] shifts = new int[16];
+	private int[] cycleShifts = new int[16];
+	private int[] consultations = new int[16];
+	private int numDoctors = 0;
+	private int months = 0;
+
+	public void add(MonthWorkload workload) {
+		for (int i = 0; i < workload.doctors.length; i++) {
+			int index = this.indexOf(workload.doctors[i]);
+			shifts[index] += workload.shifts[i];
+			cycleShifts[index] += workload.cycleShifts[i];
+			consultations[index] += workload.consultations[i];
+		}
+		months++;
+	}
+
+	/**
+	 * Add the counters of other months to these ones
+	 */
+	public WorkloadCounters merge(WorkloadCounters other) {
+		for (int i = 0; i < other.numDoctors; i++) {
+			int index = this.indexOf(other.doctors[i]);
+			shifts[index] += other.shifts[i];
+			cycleShifts[index] += other.cycleShifts[i];
+			consultations[index] += other.consultations[i];
+		}
+		months += other.months;
+		return this;
+	}
+
+	private int indexOf(Doctor doctor) {
+		Integer index = doctorIndexes.get(doctor);
+		if (index == null) {
+			index = numDoctors++;
+			doctorIndexes.put(doctor, index);
+			if (index >= doctors.length) {
+				int capacity = doctors.length * 2;
+				doctors = Arrays.copyOf(doctors, capacity);
+				shifts = Arrays.copyOf(shifts, capacity);
+				cycleShifts = Arrays.copyOf(cycleShifts, capacity);
+				consultations = Arrays.copyOf(consultations, capacity);
+			}
+			doctors[index] = doctor;
+		}
+		return index;
+	}
+
+	/**
+	 * @return The number of months added up
+	 */
+	public int getMonths() {
+		return months;
+	}
+
+	public int getNumDoctors() {
+		return numDoctors;
+	}
+
+	public Doctor getDoctor(int index) {
+		return doctors[index];
+	}
+
+	public int getShifts(int index) {
+		return shifts[index];
+	}
+
+	public int getCycleShifts(int index) {
+		return cycleShifts[index];
+	}
+
+	public int getConsultations(int index) {
+		return consultations[index];
+	}
+}
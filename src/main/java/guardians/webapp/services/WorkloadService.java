@@ -0,0 +1,190 @@
+package guardians.webapp.services;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import guardians.webapp.model.Doctor;
+import guardians.webapp.model.DoctorWorkload;
+import guardians.webapp.model.Schedule;
+import guardians.webapp.model.ShiftConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class adds up the shifts, cycle shifts and consultations of each
+ * {@link Doctor} in the {@link Schedule}s of a range of months, so they can be
+ * compared with the limits of their {@link ShiftConfiguration}s.
+ *
+ * The schedules are requested at the same time, and the months are added up
+ * in parallel by splitting the range in halves (fork-join style). The workload
+ * of a confirmed schedule can no longer change, so it is cached: adding a new
+ * month to a range only costs the aggregation of that month. The hits and
+ * misses of the cache are published with the name "monthWorkloads".
+ *
+ * @author miggoncan
+ */
+@Service
+@Slf4j
+public class WorkloadService {
+	@Autowired
+	private AsyncScheduleService asyncScheduleService;
+	@Autowired
+	private AsyncDoctorService asyncDoctorService;
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${guardians.cache.workloads.max-size}")
+	private Long maxSize;
+
+	private Cache<YearMonth, MonthWorkload> monthWorkloads;
+
+	@PostConstruct
+	public void init() {
+		monthWorkloads = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, monthWorkloads, "monthWorkloads");
+	}
+
+	/**
+	 * Adds up the months of a range, splitting it in halves until a single month
+	 * is left
+	 */
+	private class AggregationTask extends RecursiveTask<WorkloadCounters> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<EntityModel<Schedule>> schedules;
+		private final int from;
+		private final int to;
+
+		public AggregationTask(List<EntityModel<Schedule>> schedules, int from, int to) {
+			this.schedules = schedules;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected WorkloadCounters compute() {
+			if (to - from <= 1) {
+				WorkloadCounters counters = new WorkloadCounters();
+				if (to > from) {
+					counters.add(getMonthWorkload(schedules.get(from)));
+				}
+				return counters;
+			}
+			int middle = (from + to) >>> 1;
+			AggregationTask firstHalf = new AggregationTask(schedules, from, middle);
+			firstHalf.fork();
+			WorkloadCounters secondHalf = new AggregationTask(schedules, middle, to).compute();
+			return firstHalf.join().merge(secondHalf);
+		}
+	}
+
+	/**
+	 * @param from The first month, included
+	 * @param to   The last month, included
+	 * @return The workload of each doctor found in the schedules of the months,
+	 *         sorted by last names. Months without a schedule are left out
+	 */
+	public List<DoctorWorkload> getWorkloads(YearMonth from, YearMonth to) {
+		log.info("Request to get the workloads from " + from + " to " + to);
+		Map<YearMonth, CompletableFuture<EntityModel<Schedule>>> scheduleFutures = new LinkedHashMap<>();
+		for (YearMonth yearMonth = from; !yearMonth.isAfter(to); yearMonth = yearMonth.plusMonths(1)) {
+			if (monthWorkloads.getIfPresent(yearMonth) == null) {
+				scheduleFutures.put(yearMonth, asyncScheduleService.getSchedule(yearMonth));
+			} else {
+				scheduleFutures.put(yearMonth, null);
+			}
+		}
+		List<EntityModel<Schedule>> schedules = new ArrayList<>(scheduleFutures.size());
+		List<MonthWorkload> cachedWorkloads = new ArrayList<>();
+		for (Map.Entry<YearMonth, CompletableFuture<EntityModel<Schedule>>> entry : scheduleFutures.entrySet()) {
+			if (entry.getValue() == null) {
+				MonthWorkload cachedWorkload = monthWorkloads.getIfPresent(entry.getKey());
+				if (cachedWorkload != null) {
+					cachedWorkloads.add(cachedWorkload);
+					continue;
+				}
+				// It has just been evicted
+				entry.setValue(asyncScheduleService.getSchedule(entry.getKey()));
+			}
+			EntityModel<Schedule> scheduleEntity;
+			try {
+				scheduleEntity = UpstreamExecutor.join(entry.getValue());
+			} catch (HttpClientErrorException.NotFound e) {
+				scheduleEntity = null;
+			}
+			if (scheduleEntity == null || scheduleEntity.getContent() == null) {
+				log.debug("There is no schedule for " + entry.getKey());
+				continue;
+			}
+			schedules.add(scheduleEntity);
+		}
+		log.debug(cachedWorkloads.size() + " months were cached. Adding up " + schedules.size() + " months");
+
+		WorkloadCounters counters = ForkJoinPool.commonPool()
+				.invoke(new AggregationTask(schedules, 0, schedules.size()));
+		for (MonthWorkload cachedWorkload : cachedWorkloads) {
+			counters.add(cachedWorkload);
+		}
+
+		List<CompletableFuture<EntityModel<ShiftConfiguration>>> shiftConfFutures = new ArrayList<>();
+		for (int i = 0; i < counters.getNumDoctors(); i++) {
+			shiftConfFutures.add(asyncDoctorService.getShiftConfiguration(counters.getDoctor(i).getId()));
+		}
+		int months = counters.getMonths();
+		List<DoctorWorkload> workloads = new ArrayList<>(counters.getNumDoctors());
+		for (int i = 0; i < counters.getNumDoctors(); i++) {
+			DoctorWorkload workload = new DoctorWorkload();
+			workload.setDoctor(counters.getDoctor(i));
+			workload.setShifts(counters.getShifts(i));
+			workload.setCycleShifts(counters.getCycleShifts(i));
+			workload.setConsultations(counters.getConsultations(i));
+			EntityModel<ShiftConfiguration> shiftConfEntity = UpstreamExecutor.join(shiftConfFutures.get(i));
+			ShiftConfiguration shiftConf = shiftConfEntity == null ? null : shiftConfEntity.getContent();
+			if (shiftConf != null) {
+				workload.setMinShifts(times(shiftConf.getMinShifts(), months));
+				workload.setMaxShifts(times(shiftConf.getMaxShifts(), months));
+				workload.setExpectedConsultations(times(shiftConf.getNumConsultations(), months));
+			}
+			workloads.add(workload);
+		}
+		workloads.sort(Comparator.comparing((DoctorWorkload workload) -> workload.getDoctor().getLastNames(),
+				Comparator.nullsLast(Comparator.naturalOrder())));
+		log.info("The workloads of " + workloads.size() + " doctors in " + months + " months have been added up");
+		return workloads;
+	}
+
+	private MonthWorkload getMonthWorkload(EntityModel<Schedule> scheduleEntity) {
+		MonthWorkload workload = MonthWorkload.of(scheduleEntity.getContent());
+		if (ScheduleCache.isConfirmed(scheduleEntity)) {
+			log.debug("Caching the workload of the confirmed schedule of " + workload.yearMonth);
+			monthWorkloads.put(workload.yearMonth, workload);
+		}
+		return workload;
+	}
+
+	private static Integer times(Integer value, int months) {
+		return value == null ? null : value * months;
+	}
+}
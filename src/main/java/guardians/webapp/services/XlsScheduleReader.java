@@ -0,0 +1,127 @@
+package guardians.webapp.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.util.NumberToTextConverter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class reads the first sheet of a xls file with the HSSF event API,
+ * sending its rows and cells to a {@link ScheduleImport}. The records are
+ * processed as they are read, so the workbook is never loaded in memory as a
+ * whole.
+ *
+ * @author miggoncan
+ */
+@Slf4j
+class XlsScheduleReader {
+
+	/**
+	 * @param file           The xls file
+	 * @param scheduleImport Receives the rows and cells of the first sheet
+	 * @throws ScheduleImportException if the file cannot be read
+	 */
+	public static void read(File file, ScheduleImport scheduleImport) throws IOException {
+		try (POIFSFileSystem fileSystem = new POIFSFileSystem(file, true)) {
+			HSSFRequest request = new HSSFRequest();
+			request.addListenerForAllRecords(new SheetListener(scheduleImport));
+			new HSSFEventFactory().processWorkbookEvents(request, fileSystem);
+		} catch (RuntimeException e) {
+			if (e instanceof ScheduleImportException) {
+				throw e;
+			}
+			log.info("The xls file could not be read: " + e);
+			throw new ScheduleImportException(ScheduleImportException.UNREADABLE_FILE, e);
+		}
+	}
+
+	private static class SheetListener implements HSSFListener {
+		private final ScheduleImport scheduleImport;
+
+		/**
+		 * The cell styles of the workbook. They are found before the sheets, and a
+		 * cell refers to its style by its position in this list
+		 */
+		private final List<ExtendedFormatRecord> cellStyles = new ArrayList<>();
+		private SSTRecord sharedStrings;
+		/**
+		 * The index of the sheet being read. Only the first one is imported
+		 */
+		private int sheetIndex = -1;
+
+		public SheetListener(ScheduleImport scheduleImport) {
+			this.scheduleImport = scheduleImport;
+		}
+
+		@Override
+		public void processRecord(Record record) {
+			switch (record.getSid()) {
+			case BOFRecord.sid:
+				if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+					sheetIndex++;
+				}
+				break;
+			case ExtendedFormatRecord.sid:
+				cellStyles.add((ExtendedFormatRecord) record);
+				break;
+			case SSTRecord.sid:
+				sharedStrings = (SSTRecord) record;
+				break;
+			case RowRecord.sid:
+				if (sheetIndex == 0) {
+					RowRecord row = (RowRecord) record;
+					scheduleImport.row(row.getRowNumber(), row.getFormatted() ? this.colorOf(row.getXFIndex()) : null);
+				}
+				break;
+			case NumberRecord.sid:
+				if (sheetIndex == 0) {
+					NumberRecord number = (NumberRecord) record;
+					scheduleImport.cell(number.getRow(), number.getColumn(),
+							NumberToTextConverter.toText(number.getValue()), this.colorOf(number.getXFIndex()));
+				}
+				break;
+			case LabelSSTRecord.sid:
+				if (sheetIndex == 0) {
+					LabelSSTRecord label = (LabelSSTRecord) record;
+					scheduleImport.cell(label.getRow(), label.getColumn(),
+							sharedStrings.getString(label.getSSTIndex()).getString(),
+							this.colorOf(label.getXFIndex()));
+				}
+				break;
+			case LabelRecord.sid:
+				if (sheetIndex == 0) {
+					LabelRecord label = (LabelRecord) record;
+					scheduleImport.cell(label.getRow(), label.getColumn(), label.getValue(),
+							this.colorOf(label.getXFIndex()));
+				}
+				break;
+			default:
+				break;
+			}
+		}
+
+		private short colorOf(int styleIndex) {
+			if (styleIndex < 0 || styleIndex >= cellStyles.size()) {
+				return IndexedColors.AUTOMATIC.getIndex();
+			}
+			return cellStyles.get(styleIndex).getFillForeground();
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package guardians.webapp.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class reads the first sheet of a xlsx file with a SAX parser, sending
+ * its rows and cells to a {@link ScheduleImport}. The sheet is never loaded in
+ * memory as a whole.
+ *
+ * @author miggoncan
+ */
+@Slf4j
+class XlsxScheduleReader {
+
+	/**
+	 * @param file           The xlsx file
+	 * @param scheduleImport Receives the rows and cells of the first sheet
+	 * @throws ScheduleImportException if the file cannot be read
+	 */
+	public static void read(File file, ScheduleImport scheduleImport) throws IOException {
+		try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+			XSSFReader reader = new XSSFReader(pkg);
+			StylesTable styles = reader.getStylesTable();
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+			Iterator<InputStream> sheets = reader.getSheetsData();
+			if (!sheets.hasNext()) {
+				throw new ScheduleImportException(ScheduleImportException.UNREADABLE_FILE, null);
+			}
+			try (InputStream sheet = sheets.next()) {
+				XMLReader parser = SAXHelper.newXMLReader();
+				parser.setContentHandler(new SheetHandler(styles, strings, scheduleImport));
+				parser.parse(new InputSource(sheet));
+			}
+		} catch (OpenXML4JException | SAXException | ParserConfigurationException | IllegalArgumentException e) {
+			log.info("The xlsx file could not be read: " + e);
+			throw new ScheduleImportException(ScheduleImportException.UNREADABLE_FILE, e);
+		}
+	}
+
+	private static class SheetHandler extends DefaultHandler {
+		private final StylesTable styles;
+		private final ReadOnlySharedStringsTable strings;
+		private final ScheduleImport scheduleImport;
+
+		private int rowIndex = -1;
+		private int columnIndex;
+		private String cellType;
+		private short cellColor;
+		/**
+		 * Whether the characters being received are part of the value of a cell
+		 */
+		private boolean isValue = false;
+		private final StringBuilder value = new StringBuilder();
+
+		public SheetHandler(StylesTable styles, ReadOnlySharedStringsTable strings,
+				ScheduleImport scheduleImport) {
+			this.styles = styles;
+			this.strings = strings;
+			this.scheduleImport = scheduleImport;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			switch (localName) {
+			case "row":
+				// The number of the row is optional. If missing, it follows the previous one
+				String rowNumber = attributes.getValue("r");
+				rowIndex = rowNumber == null ? rowIndex + 1 : Integer.parseInt(rowNumber) - 1;
+				String rowStyle = attributes.getValue("s");
+				String customFormat = attributes.getValue("customFormat");
+				Short rowColor = null;
+				if (rowStyle != null && ("1".equals(customFormat) || "true".equals(customFormat))) {
+					rowColor = this.colorOf(rowStyle);
+				}
+				scheduleImport.row(rowIndex, rowColor);
+				columnIndex = -1;
+				break;
+			case "c":
+				// The reference of the cell is optional. If missing, it follows the previous one
+				String cellReference = attributes.getValue("r");
+				if (cellReference == null) {
+					columnIndex++;
+				} else {
+					CellReference reference = new CellReference(cellReference);
+					rowIndex = reference.getRow();
+					columnIndex = reference.getCol();
+				}
+				cellType = attributes.getValue("t");
+				cellColor = this.colorOf(attributes.getValue("s"));
+				value.setLength(0);
+				break;
+			case "v":
+			case "t":
+				isValue = true;
+				break;
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			switch (localName) {
+			case "v":
+			case "t":
+				isValue = false;
+				break;
+			case "c":
+				String cellValue = value.toString();
+				if ("s".equals(cellType) && !cellValue.isEmpty()) {
+					cellValue = strings.getItemAt(Integer.parseInt(cellValue)).getString();
+				}
+				scheduleImport.cell(rowIndex, columnIndex, cellValue, cellColor);
+				break;
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (isValue) {
+				value.append(ch, start, length);
+			}
+		}
+
+		/**
+		 * @param styleIndex The index of the style, as found in the "s" attribute. It
+		 *                   may be null
+		 * @return The fill color of the style
+		 */
+		private short colorOf(String styleIndex) {
+			int index = styleIndex == null ? 0 : Integer.parseInt(styleIndex);
+			if (index >= styles.getNumCellStyles()) {
+				return IndexedColors.AUTOMATIC.getIndex();
+			}
+			return styles.getStyleAt(index).getFillForegroundColor();
+		}
+	}
+}
@@ -66,7 +66,7 @@ $('#confirmDayConf').click(function(){
 $('#submitBtn').click(function() {
 	if (confirm($('#confirmMessage').html())) {
 		$('#submitProgress').show();
-		$("#submitProgressBar").animate({width: "80%"}, 3000);
+		$('#submitProgressBar').css('width', '5%');
 		var dayConfs = []
 		$('#dataMonth').children().each(function() {
 			var dayConf = {
@@ -99,7 +99,60 @@ $('#submitBtn').click(function() {
 			url: window.location.href, 
 			data: JSON.stringify(dayConfs),
 			contentType: "application/json; charset=utf-8",
-			success: data => window.location = data.scheduleHref 
+			success: data => followGeneration(data),
+			error: () => generationFailed()
 		});
 	}
-});
\ No newline at end of file
+});
+
+// The schedule is generated in the background. Its progress is received as
+// Server-Sent Events until it has been generated
+var currentJob = null;
+const followGeneration = function(job) {
+	currentJob = job;
+	const events = new EventSource(job.eventsHref);
+	events.addEventListener('progress', function(event) {
+		const progress = JSON.parse(event.data);
+		// The remaining time is unknown, so the bar approaches the end without reaching it
+		const width = 90 - 85 * Math.exp(-progress.elapsedMillis / 20000);
+		$('#submitProgressBar').css('width', width + '%');
+	});
+	events.addEventListener('completed', function(event) {
+		events.close();
+		currentJob = null;
+		$('#submitProgressBar').css('width', '100%');
+		window.location = JSON.parse(event.data).scheduleHref;
+	});
+	events.addEventListener('failed', function(event) {
+		events.close();
+		currentJob = null;
+		generationFailed();
+	});
+	events.addEventListener('cancelled', function(event) {
+		events.close();
+		currentJob = null;
+		$('#submitProgress').hide();
+	});
+	events.onerror = function() {
+		// The connection was lost. The schedule may still be generated
+		if (events.readyState == EventSource.CLOSED) {
+			window.location = job.scheduleHref;
+		}
+	};
+};
+
+const generationFailed = function() {
+	$('#submitProgress').hide();
+	alert($('#generationFailedMessage').html());
+};
+
+// Stop the generation if the user leaves while it is running
+$('#cancelBtn').click(function() {
+	if (currentJob != null) {
+		const cancelHref = currentJob.cancelHref;
+		currentJob = null;
+		$.ajax({type: 'DELETE', url: cancelHref, 
+			complete: () => window.location = $('#cancelBtn').attr('href')});
+		return false;
+	}
+});
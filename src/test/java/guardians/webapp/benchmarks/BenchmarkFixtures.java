@@ -0,0 +1,135 @@
+package guardians.webapp.benchmarks;
+
+import java.time.DayOfWeek;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.client.Traverson;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import guardians.webapp.model.Doctor;
+import guardians.webapp.model.Schedule;
+import guardians.webapp.model.ScheduleDay;
+
+/**
+ * This class generates the data used by the benchmarks: doctors and schedules
+ * similar to the ones sent by the REST service, along with the links it adds to
+ * them.
+ *
+ * The data is generated with a fixed seed, so every run of a benchmark uses the
+ * same data.
+ *
+ * @author miggoncan
+ */
+final class BenchmarkFixtures {
+	/**
+	 * A month with 30 days, starting on a Monday
+	 */
+	static final YearMonth MONTH = YearMonth.of(2020, 6);
+	static final String REST_URI = "http://localhost:8080/guardians/api";
+	static final String SCHEDULE_REL = "schedule";
+	static final String SCHEDULES_REL = "schedules";
+	static final String CALENDAR_REL = "calendar";
+	static final String SCHEDULE_STATUS_REL = "scheduleStatus";
+	static final String CONFIRM_SCHEDULE_REL = "confirm";
+
+	private static final int CYCLE_SHIFTS_PER_DAY = 2;
+	private static final int SHIFTS_PER_DAY = 2;
+	private static final long SEED = 42;
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * @param numDoctors The number of doctors
+	 * @return The doctors, with ids from 1 to numDoctors
+	 */
+	static List<Doctor> doctors(int numDoctors) {
+		List<Doctor> doctors = new ArrayList<>(numDoctors);
+		for (long id = 1; id <= numDoctors; id++) {
+			Doctor doctor = new Doctor();
+			doctor.setId(id);
+			doctor.setFirstName("Name" + id);
+			doctor.setLastNames("LastName" + id);
+			doctor.setEmail("doctor" + id + "@guardians.com");
+			doctor.setStatus("AVAILABLE");
+			doctors.add(doctor);
+		}
+		return doctors;
+	}
+
+	/**
+	 * @param yearMonth  The month of the schedule
+	 * @param numDoctors The number of doctors the shifts are assigned to
+	 * @return A schedule where every day has cycle shifts and shifts, and working
+	 *         days also have consultations of a tenth of the doctors
+	 */
+	static Schedule schedule(YearMonth yearMonth, int numDoctors) {
+		Random random = new Random(SEED);
+		List<Doctor> doctors = doctors(numDoctors);
+		int consultationsPerDay = Math.max(1, numDoctors / 10);
+		Schedule schedule = new Schedule();
+		schedule.setMonth(yearMonth.getMonthValue());
+		schedule.setYear(yearMonth.getYear());
+		schedule.setStatus("PENDING_CONFIRMATION");
+		TreeSet<ScheduleDay> days = new TreeSet<>();
+		for (int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+			DayOfWeek dayOfWeek = yearMonth.atDay(day).getDayOfWeek();
+			boolean isWorkingDay = dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY;
+			ScheduleDay scheduleDay = new ScheduleDay();
+			scheduleDay.setDay(day);
+			scheduleDay.setIsWorkingDay(isWorkingDay);
+			scheduleDay.setCycle(pick(doctors, CYCLE_SHIFTS_PER_DAY, random));
+			scheduleDay.setShifts(pick(doctors, isWorkingDay ? SHIFTS_PER_DAY : 0, random));
+			scheduleDay.setConsultations(pick(doctors, isWorkingDay ? consultationsPerDay : 0, random));
+			days.add(scheduleDay);
+		}
+		schedule.setDays(days);
+		return schedule;
+	}
+
+	private static Set<Doctor> pick(List<Doctor> doctors, int count, Random random) {
+		Set<Doctor> picked = new HashSet<>();
+		count = Math.min(count, doctors.size());
+		while (picked.size() < count) {
+			picked.add(doctors.get(random.nextInt(doctors.size())));
+		}
+		return picked;
+	}
+
+	/**
+	 * @return The schedule with the links the REST service adds to it
+	 */
+	static EntityModel<Schedule> scheduleEntity(Schedule schedule) {
+		String href = REST_URI + "/schedules/" + YearMonth.of(schedule.getYear(), schedule.getMonth());
+		return EntityModel.of(schedule, Link.of(href), Link.of(href, SCHEDULE_REL),
+				Link.of(REST_URI + "/schedules", SCHEDULES_REL),
+				Link.of(REST_URI + "/calendars/" + YearMonth.of(schedule.getYear(), schedule.getMonth()),
+						CALENDAR_REL),
+				Link.of(href + "/status", SCHEDULE_STATUS_REL), Link.of(href + "/confirm", CONFIRM_SCHEDULE_REL));
+	}
+
+	/**
+	 * @return The ObjectMapper used to read the HAL responses of the REST service,
+	 *         the same one used by the Traverson and RestTemplates of the webapp
+	 */
+	static ObjectMapper halObjectMapper() {
+		for (HttpMessageConverter<?> converter : Traverson.getDefaultMessageConverters(MediaTypes.HAL_JSON)) {
+			if (converter instanceof MappingJackson2HttpMessageConverter) {
+				return ((MappingJackson2HttpMessageConverter) converter).getObjectMapper();
+			}
+		}
+		throw new IllegalStateException("No HAL message converter was found");
+	}
+}
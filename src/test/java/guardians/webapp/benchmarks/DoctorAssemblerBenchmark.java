@@ -0,0 +1,127 @@
+package guardians.webapp.benchmarks;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.*;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.ui.Model;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import guardians.webapp.controllers.DoctorsController;
+import guardians.webapp.controllers.assemblers.DoctorAssembler;
+import guardians.webapp.model.Doctor;
+
+/**
+ * This benchmark compares the mapping of the links of a list of doctors
+ * using the precomputed link templates of {@link DoctorAssembler} with the
+ * previous approach, where every link was built with
+ * {@link org.springframework.hateoas.server.mvc.WebMvcLinkBuilder}.
+ *
+ * It can be run with its main method, once the test classes are compiled, or
+ * with the benchmark profile of the build.
+ *
+ * @author miggoncan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DoctorAssemblerBenchmark {
+	private static final String DOCTORS_REL = "doctors";
+	private static final String UPDATE_DOCTOR_REL = "updateDoctor";
+	private static final String SHIFT_CONFIG_REL = "shiftConfig";
+
+	@Param({ "20", "200", "500" })
+	private int doctors;
+
+	private DoctorAssembler doctorAssembler;
+	private List<EntityModel<Doctor>> doctorEntities;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		doctorAssembler = new DoctorAssembler();
+		ReflectionTestUtils.setField(doctorAssembler, "doctorsLink", DOCTORS_REL);
+		ReflectionTestUtils.setField(doctorAssembler, "updateDoctorLink", UPDATE_DOCTOR_REL);
+		ReflectionTestUtils.setField(doctorAssembler, "shiftConfLink", SHIFT_CONFIG_REL);
+		doctorAssembler.init();
+
+		doctorEntities = new ArrayList<>(doctors);
+		for (Doctor doctor : BenchmarkFixtures.doctors(doctors)) {
+			String href = "http://localhost:8080/doctors/" + doctor.getId();
+			doctorEntities.add(EntityModel.of(doctor, Link.of(href), Link.of(href, UPDATE_DOCTOR_REL),
+					Link.of("http://localhost:8080/doctors", DOCTORS_REL),
+					Link.of(href + "/shiftConfigs", SHIFT_CONFIG_REL)));
+		}
+
+		// The links are created while handling a request, as in the webapp
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/doctors");
+		request.setServerPort(8080);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Benchmark
+	public List<Doctor> linkTemplates() {
+		return doctorAssembler.toList(doctorEntities);
+	}
+
+	@Benchmark
+	public List<Doctor> linkBuilder() throws NoSuchMethodException {
+		List<Doctor> mappedDoctors = new LinkedList<>();
+		for (EntityModel<Doctor> entity : doctorEntities) {
+			Doctor doctor = entity.getContent();
+			Map<String, String> links = new HashMap<>();
+			for (Link link : entity.getLinks()) {
+				String rel = link.getRel().value();
+				if (rel.equals("self")) {
+					Method methodToSelf = DoctorsController.class.getMethod("getDoctor", Long.class, Model.class);
+					links.put("self", linkTo(methodToSelf, doctor.getId()).withSelfRel().getHref());
+				} else if (rel.equals(UPDATE_DOCTOR_REL)) {
+					Method methodToUpdate = DoctorsController.class.getMethod("editDoctor", Long.class,
+							Model.class);
+					links.put(UPDATE_DOCTOR_REL, linkTo(methodToUpdate, doctor.getId()).withSelfRel().getHref());
+				}
+			}
+			doctor.setLinks(links);
+			mappedDoctors.add(doctor);
+		}
+		return mappedDoctors;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(DoctorAssemblerBenchmark.class.getSimpleName()).build()).run();
+	}
+}
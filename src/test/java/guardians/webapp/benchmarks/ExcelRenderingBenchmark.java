@@ -0,0 +1,92 @@
+package guardians.webapp.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import guardians.webapp.model.Schedule;
+import guardians.webapp.services.Schedule2ExcelService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * This benchmark measures the conversion of the schedule of a month to xls and
+ * xlsx files with {@link Schedule2ExcelService#toExcel(Schedule, boolean)}. The
+ * service is configured as in application.properties.
+ *
+ * It can be run with its main method, once the test classes are compiled, or
+ * with the benchmark profile of the build.
+ *
+ * @author miggoncan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExcelRenderingBenchmark {
+	@Param({ "20", "200" })
+	private int doctors;
+	@Param({ "false", "true" })
+	private boolean useXlsx;
+
+	private Schedule2ExcelService schedule2ExcelService;
+	private Schedule schedule;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		schedule2ExcelService = new Schedule2ExcelService();
+		ReflectionTestUtils.setField(schedule2ExcelService, "csFontName", "Albertus");
+		ReflectionTestUtils.setField(schedule2ExcelService, "csFontSize", (short) 10);
+		ReflectionTestUtils.setField(schedule2ExcelService, "csFontIsBold", true);
+		ReflectionTestUtils.setField(schedule2ExcelService, "sFontName", "Arial");
+		ReflectionTestUtils.setField(schedule2ExcelService, "sFontSize", (short) 10);
+		ReflectionTestUtils.setField(schedule2ExcelService, "sFontIsBold", false);
+		ReflectionTestUtils.setField(schedule2ExcelService, "firstColWidth", 1000);
+		ReflectionTestUtils.setField(schedule2ExcelService, "colWidth", 5000);
+		ReflectionTestUtils.setField(schedule2ExcelService, "streaming", true);
+		ReflectionTestUtils.setField(schedule2ExcelService, "streamingWindowSize", 100);
+		ReflectionTestUtils.setField(schedule2ExcelService, "importMaxErrors", 100);
+		ReflectionTestUtils.setField(schedule2ExcelService, "renderThreads", 4);
+		ReflectionTestUtils.setField(schedule2ExcelService, "renderQueueCapacity", 24);
+		ReflectionTestUtils.setField(schedule2ExcelService, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(schedule2ExcelService, "meterRegistry", new SimpleMeterRegistry());
+		schedule2ExcelService.init();
+
+		schedule = BenchmarkFixtures.schedule(BenchmarkFixtures.MONTH, doctors);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		schedule2ExcelService.shutdown();
+	}
+
+	@Benchmark
+	public ByteArrayOutputStream toExcel() throws IOException {
+		return schedule2ExcelService.toExcel(schedule, useXlsx);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ExcelRenderingBenchmark.class.getSimpleName()).build()).run();
+	}
+}
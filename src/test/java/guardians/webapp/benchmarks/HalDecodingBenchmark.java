@@ -0,0 +1,80 @@
+package guardians.webapp.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.hateoas.EntityModel;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import guardians.webapp.model.Schedule;
+
+/**
+ * This benchmark measures the decoding of the HAL representation of a
+ * {@link Schedule}, as received from the REST service, into an
+ * {@link EntityModel}. The same ObjectMapper the webapp uses is used.
+ *
+ * Decoding the bytes of the body is compared with binding the objects from an
+ * already parsed tree, which is how the responses that have not been modified
+ * are decoded (see CachingHalMessageConverter).
+ *
+ * It can be run with its main method, once the test classes are compiled, or
+ * with the benchmark profile of the build.
+ *
+ * @author miggoncan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HalDecodingBenchmark {
+	@Param({ "20", "200" })
+	private int doctors;
+
+	private ObjectMapper objectMapper;
+	private JavaType scheduleType;
+	private byte[] scheduleJson;
+	private JsonNode scheduleTree;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		objectMapper = BenchmarkFixtures.halObjectMapper();
+		scheduleType = objectMapper.getTypeFactory().constructParametricType(EntityModel.class, Schedule.class);
+		scheduleJson = objectMapper.writeValueAsBytes(BenchmarkFixtures
+				.scheduleEntity(BenchmarkFixtures.schedule(BenchmarkFixtures.MONTH, doctors)));
+		scheduleTree = objectMapper.readTree(scheduleJson);
+	}
+
+	@Benchmark
+	public EntityModel<Schedule> decodeSchedule() throws IOException {
+		return objectMapper.readValue(scheduleJson, scheduleType);
+	}
+
+	@Benchmark
+	public EntityModel<Schedule> bindScheduleFromTree() throws IOException {
+		return objectMapper.readerFor(scheduleType).readValue(scheduleTree);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HalDecodingBenchmark.class.getSimpleName()).build()).run();
+	}
+}
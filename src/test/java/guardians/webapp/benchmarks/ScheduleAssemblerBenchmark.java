@@ -0,0 +1,106 @@
+package guardians.webapp.benchmarks;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import guardians.webapp.controllers.assemblers.ScheduleAssembler;
+import guardians.webapp.model.Schedule;
+
+/**
+ * This benchmark measures the mapping of the schedules received from the REST
+ * service to the ones shown by the webapp, with
+ * {@link ScheduleAssembler#toSchedule(EntityModel)} for a single month and
+ * {@link ScheduleAssembler#toList(Iterable)} for a year.
+ *
+ * It can be run with its main method, once the test classes are compiled, or
+ * with the benchmark profile of the build.
+ *
+ * @author miggoncan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScheduleAssemblerBenchmark {
+	private static final int MONTHS = 12;
+
+	@Param({ "20", "200" })
+	private int doctors;
+
+	private ScheduleAssembler scheduleAssembler;
+	private EntityModel<Schedule> scheduleEntity;
+	private List<EntityModel<Schedule>> scheduleEntities;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		scheduleAssembler = new ScheduleAssembler();
+		ReflectionTestUtils.setField(scheduleAssembler, "calendarLink", BenchmarkFixtures.CALENDAR_REL);
+		ReflectionTestUtils.setField(scheduleAssembler, "schedulesLink", BenchmarkFixtures.SCHEDULES_REL);
+		ReflectionTestUtils.setField(scheduleAssembler, "scheduleStatusLink",
+				BenchmarkFixtures.SCHEDULE_STATUS_REL);
+		ReflectionTestUtils.setField(scheduleAssembler, "confirmScheduleLink",
+				BenchmarkFixtures.CONFIRM_SCHEDULE_REL);
+		ReflectionTestUtils.setField(scheduleAssembler, "downloadScheduleLink", "scheduleDownload");
+		ReflectionTestUtils.setField(scheduleAssembler, "defaultUseXlsx", true);
+		scheduleAssembler.init();
+
+		scheduleEntity = BenchmarkFixtures
+				.scheduleEntity(BenchmarkFixtures.schedule(BenchmarkFixtures.MONTH, doctors));
+		scheduleEntities = new ArrayList<>(MONTHS);
+		YearMonth firstMonth = BenchmarkFixtures.MONTH.minusMonths(MONTHS - 1);
+		for (int i = 0; i < MONTHS; i++) {
+			scheduleEntities.add(BenchmarkFixtures
+					.scheduleEntity(BenchmarkFixtures.schedule(firstMonth.plusMonths(i), doctors)));
+		}
+
+		// The links are created while handling a request, as in the webapp
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/schedules");
+		request.setServerPort(8080);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Benchmark
+	public Schedule toSchedule() {
+		return scheduleAssembler.toSchedule(scheduleEntity);
+	}
+
+	@Benchmark
+	public List<Schedule> toList() {
+		return scheduleAssembler.toList(scheduleEntities);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ScheduleAssemblerBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,299 @@
+package guardians.webapp.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StreamUtils;
+
+import guardians.webapp.GuardiansWebappApplication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class loads the webapp with requests to its controllers, and reports
+ * the throughput and latency percentiles of each kind of request.
+ *
+ * The webapp is started in the same process, on a free port, and it
+ * communicates with a {@link RestApiStub} instead of the REST service, so the
+ * whole test runs on the local machine. It is run with the load-test profile
+ * of the build (mvn -P load-test verify), and configured with the following
+ * system properties:
+ * <ul>
+ * <li>loadtest.threads: Number of clients sending requests at the same
+ * time</li>
+ * <li>loadtest.warmup and loadtest.duration: Seconds the requests are sent
+ * before and while they are measured</li>
+ * <li>loadtest.doctors and loadtest.months: Number of doctors and of months
+ * with a schedule in the stub</li>
+ * <li>loadtest.stub.latency and loadtest.stub.jitter: Milliseconds the stub
+ * waits before answering each request, plus a random jitter up to the given
+ * value</li>
+ * <li>loadtest.stub.generation-time: Milliseconds a schedule is being
+ * generated in the stub</li>
+ * <li>loadtest.generation-weight: Weight of the requests to generate a
+ * schedule. 0 disables them</li>
+ * </ul>
+ *
+ * @author miggoncan
+ */
+@Slf4j
+public class LoadTestDriver {
+	private static final double[] PERCENTILES = { 0.5, 0.95, 0.99 };
+	private static final String LATENCY_METRIC = "loadtest.latency";
+	private static final String RESPONSES_METRIC = "loadtest.responses";
+
+	private final int threads = Integer.getInteger("loadtest.threads", 16);
+	private final int warmup = Integer.getInteger("loadtest.warmup", 10);
+	private final int duration = Integer.getInteger("loadtest.duration", 60);
+	private final int doctors = Integer.getInteger("loadtest.doctors", 50);
+	private final int months = Integer.getInteger("loadtest.months", 12);
+	private final long stubLatency = Long.getLong("loadtest.stub.latency", 20L);
+	private final long stubJitter = Long.getLong("loadtest.stub.jitter", 10L);
+	private final long stubGenerationTime = Long.getLong("loadtest.stub.generation-time", 3000L);
+	private final int generationWeight = Integer.getInteger("loadtest.generation-weight", 1);
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+	private final List<Scenario> scenarios = new ArrayList<>();
+	private String baseUri;
+	private String authorization;
+	private int totalWeight;
+	/**
+	 * Only the requests sent after this time (in nanoseconds) are measured
+	 */
+	private volatile long measureFrom;
+
+	/**
+	 * A kind of request sent to the webapp. The requests are chosen randomly,
+	 * with a probability proportional to their weight
+	 */
+	private static class Scenario {
+		private final String name;
+		private final int weight;
+		private final String method;
+		private final String accept;
+		private final PathSupplier path;
+		private final String body;
+
+		public Scenario(String name, int weight, String method, String accept, PathSupplier path, String body) {
+			this.name = name;
+			this.weight = weight;
+			this.method = method;
+			this.accept = accept;
+			this.path = path;
+			this.body = body;
+		}
+	}
+
+	@FunctionalInterface
+	private interface PathSupplier {
+		String get(ThreadLocalRandom random);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new LoadTestDriver().run();
+		// The webapp may leave non-daemon threads behind
+		System.exit(0);
+	}
+
+	public void run() throws Exception {
+		RestApiStub stub = new RestApiStub(stubLatency, stubJitter, stubGenerationTime, doctors, months);
+		stub.start(threads * 2);
+		ConfigurableApplicationContext webapp = null;
+		try {
+			webapp = this.startWebapp(stub.getUri());
+			String port = webapp.getEnvironment().getProperty("local.server.port");
+			String contextPath = webapp.getEnvironment().getProperty("server.servlet.context-path", "");
+			baseUri = "http://127.0.0.1:" + port + contextPath;
+			String credentials = webapp.getEnvironment().getProperty("auth.user.username") + ":"
+					+ webapp.getEnvironment().getProperty("auth.user.password");
+			authorization = "Basic "
+					+ Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+			this.createScenarios();
+			this.load();
+			this.report(stub);
+		} finally {
+			if (webapp != null) {
+				webapp.close();
+			}
+			stub.stop();
+		}
+	}
+
+	private ConfigurableApplicationContext startWebapp(String stubUri) {
+		// The application would be restarted by the devtools otherwise
+		System.setProperty("spring.devtools.restart.enabled", "false");
+		log.info("Starting the webapp against the REST stub at " + stubUri);
+		return SpringApplication.run(GuardiansWebappApplication.class,
+				"--server.port=0",
+				"--api.uri=" + stubUri,
+				"--logging.level.guardians.webapp.controllers=warn",
+				"--logging.level.guardians.webapp.controllers.assemblers=warn",
+				"--logging.level.guardians.webapp.services=warn");
+	}
+
+	private void createScenarios() {
+		YearMonth current = YearMonth.now();
+		this.addScenario(new Scenario("schedules", 3, "GET", "text/html", random -> "/schedules", null));
+		this.addScenario(new Scenario("schedule", 5, "GET", "text/html",
+				random -> "/schedules/" + current.minusMonths(1 + random.nextInt(months)), null));
+		this.addScenario(new Scenario("scheduleExcel", 2, "GET", "application/octet-stream",
+				random -> "/schedules/" + current.minusMonths(1 + random.nextInt(months))
+						+ "/download-as-excel?useXlsx=" + random.nextBoolean(),
+				null));
+		this.addScenario(new Scenario("doctors", 3, "GET", "text/html", random -> "/doctors", null));
+		this.addScenario(new Scenario("doctor", 3, "GET", "text/html",
+				random -> "/doctors/" + (1 + random.nextInt(doctors)), null));
+		this.addScenario(new Scenario("doctorShifts", 2, "GET", "application/json",
+				random -> "/doctors/" + (1 + random.nextInt(doctors)) + "/shifts?from="
+						+ current.minusMonths(months) + "&to=" + current.minusMonths(1),
+				null));
+		this.addScenario(new Scenario("workloads", 1, "GET", "application/json",
+				random -> "/analytics/workloads?from=" + current.minusMonths(months) + "&to="
+						+ current.minusMonths(1),
+				null));
+		// The schedules generated are the ones of the next months, so the ones
+		// already confirmed are not modified
+		this.addScenario(new Scenario("generateSchedule", generationWeight, "POST", "application/json",
+				random -> "/schedules/new?yearMonth=" + current.plusMonths(1 + random.nextInt(3)), "[]"));
+	}
+
+	private void addScenario(Scenario scenario) {
+		if (scenario.weight > 0) {
+			scenarios.add(scenario);
+			totalWeight += scenario.weight;
+		}
+	}
+
+	private Scenario nextScenario(ThreadLocalRandom random) {
+		int value = random.nextInt(totalWeight);
+		for (Scenario scenario : scenarios) {
+			value -= scenario.weight;
+			if (value < 0) {
+				return scenario;
+			}
+		}
+		return scenarios.get(scenarios.size() - 1);
+	}
+
+	private void load() throws InterruptedException {
+		log.info("Sending requests with " + threads + " clients: " + warmup + "s of warmup and " + duration
+				+ "s measured");
+		long start = System.nanoTime();
+		measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+		long end = measureFrom + TimeUnit.SECONDS.toNanos(duration);
+		ExecutorService clients = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("client-"));
+		for (int i = 0; i < threads; i++) {
+			clients.execute(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+					this.send(this.nextScenario(random), random);
+				}
+			});
+		}
+		clients.shutdown();
+		if (!clients.awaitTermination(warmup + duration + 60, TimeUnit.SECONDS)) {
+			log.warn("The clients did not finish in time");
+			clients.shutdownNow();
+		}
+	}
+
+	private void send(Scenario scenario, ThreadLocalRandom random) {
+		long start = System.nanoTime();
+		String outcome;
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL(baseUri + scenario.path.get(random))
+					.openConnection();
+			connection.setInstanceFollowRedirects(false);
+			connection.setRequestMethod(scenario.method);
+			connection.setRequestProperty("Authorization", authorization);
+			connection.setRequestProperty("Accept", scenario.accept);
+			if (scenario.body != null) {
+				connection.setDoOutput(true);
+				connection.setRequestProperty("Content-Type", "application/json");
+				try (OutputStream body = connection.getOutputStream()) {
+					body.write(scenario.body.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			int status = connection.getResponseCode();
+			// The body is read completely so the connection can be reused
+			try (InputStream body = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+				if (body != null) {
+					StreamUtils.drain(body);
+				}
+			}
+			outcome = status / 100 + "xx";
+		} catch (IOException e) {
+			outcome = "IO_ERROR";
+		}
+		long end = System.nanoTime();
+		if (start >= measureFrom) {
+			this.timer(scenario.name).record(end - start, TimeUnit.NANOSECONDS);
+			Counter.builder(RESPONSES_METRIC).tag("scenario", scenario.name).tag("outcome", outcome)
+					.register(registry).increment();
+		}
+	}
+
+	private Timer timer(String scenario) {
+		return Timer.builder(LATENCY_METRIC)
+				.tag("scenario", scenario)
+				.publishPercentiles(PERCENTILES)
+				// All the measured requests are taken into account
+				.distributionStatisticExpiry(Duration.ofSeconds(warmup + duration + 60L))
+				.distributionStatisticBufferLength(1)
+				.register(registry);
+	}
+
+	private void report(RestApiStub stub) {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format(Locale.ROOT, "%n%-18s %8s %10s %9s %9s %9s %9s %9s  %s%n", "scenario",
+				"requests", "req/s", "mean(ms)", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)", "outcomes"));
+		long totalRequests = 0;
+		for (Scenario scenario : scenarios) {
+			HistogramSnapshot snapshot = this.timer(scenario.name).takeSnapshot();
+			totalRequests += snapshot.count();
+			double[] percentiles = new double[PERCENTILES.length];
+			for (ValueAtPercentile value : snapshot.percentileValues()) {
+				for (int i = 0; i < PERCENTILES.length; i++) {
+					if (value.percentile() == PERCENTILES[i]) {
+						percentiles[i] = value.value(TimeUnit.MILLISECONDS);
+					}
+				}
+			}
+			StringBuilder outcomes = new StringBuilder();
+			for (Counter counter : registry.find(RESPONSES_METRIC).tag("scenario", scenario.name).counters()) {
+				outcomes.append(counter.getId().getTag("outcome")).append('=').append((long) counter.count())
+						.append(' ');
+			}
+			report.append(String.format(Locale.ROOT, "%-18s %8d %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f  %s%n",
+					scenario.name, snapshot.count(), (double) snapshot.count() / duration,
+					snapshot.mean(TimeUnit.MILLISECONDS), percentiles[0], percentiles[1], percentiles[2],
+					snapshot.max(TimeUnit.MILLISECONDS), outcomes.toString().trim()));
+		}
+		report.append(String.format(Locale.ROOT, "%-18s %8d %10.1f%n", "total", totalRequests,
+				(double) totalRequests / duration));
+		report.append(String.format(Locale.ROOT, "Requests answered by the REST stub: %d%n", stub.getRequests()));
+		log.info(report.toString());
+	}
+}
@@ -0,0 +1,629 @@
+package guardians.webapp.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class is an in-process stub of the guardians REST service, so the
+ * webapp can be run and loaded without it. It is served by the HTTP server of
+ * the JDK.
+ *
+ * It implements the resources behind the links of the root resource, using the
+ * rels named in application.properties (api.links.*): doctors, shift
+ * configurations, allowed shifts, calendars and schedules. Its state is kept
+ * in memory. When created, it contains the given number of doctors, and a
+ * schedule for each of the given number of months before the current one. All
+ * of them are confirmed except the last one.
+ *
+ * Every request waits for the configured latency (plus a random jitter) before
+ * being answered. Successful GET requests are answered with an ETag, and with a
+ * 304 (Not Modified) if the request contains it in the If-None-Match header.
+ * When the generation of a schedule is requested, its status is
+ * BEING_GENERATED for the configured generation time.
+ *
+ * @author miggoncan
+ */
+@Slf4j
+public class RestApiStub {
+	public static final String CONTEXT_PATH = "/guardians/api";
+
+	private static final String HAL_JSON = "application/hal+json";
+	private static final String CONFIRMED = "CONFIRMED";
+	private static final String PENDING_CONFIRMATION = "PENDING_CONFIRMATION";
+	private static final String BEING_GENERATED = "BEING_GENERATED";
+	private static final List<String> ALLOWED_SHIFTS = Arrays.asList("Monday", "Tuesday", "Wednesday",
+			"Thursday", "Friday");
+
+	private final long latency;
+	private final long jitter;
+	private final long generationTime;
+	private final int numDoctors;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final String rootRel;
+	private final String doctorsRel;
+	private final String doctorRel;
+	private final String newDoctorRel;
+	private final String updateDoctorRel;
+	private final String shiftConfsRel;
+	private final String shiftConfRel;
+	private final String allowedShiftsRel;
+	private final String calendarsRel;
+	private final String calendarRel;
+	private final String schedulesRel;
+	private final String scheduleRel;
+	private final String scheduleStatusRel;
+	private final String confirmScheduleRel;
+
+	private final ConcurrentMap<Long, Map<String, Object>> doctors = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Long, Map<String, Object>> shiftConfs = new ConcurrentHashMap<>();
+	private final ConcurrentMap<YearMonth, Map<String, Object>> calendars = new ConcurrentHashMap<>();
+	private final ConcurrentMap<YearMonth, StubSchedule> schedules = new ConcurrentHashMap<>();
+	private final AtomicLong nextDoctorId = new AtomicLong(1);
+	private final AtomicLong requests = new AtomicLong();
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * A schedule of the stub. While it is being generated, it has no days
+	 */
+	private static class StubSchedule {
+		private final String status;
+		private final List<Object> days;
+		/**
+		 * When the generation finishes, in milliseconds. Only used while the status
+		 * is BEING_GENERATED
+		 */
+		private final long generatedAt;
+
+		public StubSchedule(String status, List<Object> days, long generatedAt) {
+			this.status = status;
+			this.days = days;
+			this.generatedAt = generatedAt;
+		}
+	}
+
+	/**
+	 * @param latency        The time (in milliseconds) each request waits before
+	 *                       being answered
+	 * @param jitter         The maximum time (in milliseconds) randomly added to
+	 *                       the latency
+	 * @param generationTime The time (in milliseconds) a schedule is
+	 *                       BEING_GENERATED
+	 * @param numDoctors     The number of doctors initially available
+	 * @param numMonths      The number of months before the current one with a
+	 *                       schedule
+	 * @throws IOException if application.properties cannot be read
+	 */
+	public RestApiStub(long latency, long jitter, long generationTime, int numDoctors, int numMonths)
+			throws IOException {
+		this.latency = latency;
+		this.jitter = jitter;
+		this.generationTime = generationTime;
+		this.numDoctors = numDoctors;
+
+		Properties properties = PropertiesLoaderUtils
+				.loadProperties(new ClassPathResource("application.properties"));
+		rootRel = properties.getProperty("api.links.root");
+		doctorsRel = properties.getProperty("api.links.doctors");
+		doctorRel = properties.getProperty("api.links.doctor");
+		newDoctorRel = properties.getProperty("api.links.newDoctor");
+		updateDoctorRel = properties.getProperty("api.links.doctorUpdate");
+		shiftConfsRel = properties.getProperty("api.links.shiftconfs");
+		shiftConfRel = properties.getProperty("api.links.shiftconf");
+		allowedShiftsRel = properties.getProperty("api.links.allowedshifts");
+		calendarsRel = properties.getProperty("api.links.calendars");
+		calendarRel = properties.getProperty("api.links.calendar");
+		schedulesRel = properties.getProperty("api.links.schedules");
+		scheduleRel = properties.getProperty("api.links.schedule");
+		scheduleStatusRel = properties.getProperty("api.links.scheduleStatus");
+		confirmScheduleRel = properties.getProperty("api.links.confirmSchedule");
+
+		for (int i = 0; i < numDoctors; i++) {
+			long id = nextDoctorId.getAndIncrement();
+			Map<String, Object> doctor = new LinkedHashMap<>();
+			doctor.put("id", id);
+			doctor.put("firstName", "Name" + id);
+			doctor.put("lastNames", "LastName" + id);
+			doctor.put("email", "doctor" + id + "@guardians.com");
+			doctor.put("status", "AVAILABLE");
+			doctors.put(id, doctor);
+			Map<String, Object> shiftConf = new LinkedHashMap<>();
+			shiftConf.put("doctorId", id);
+			shiftConf.put("minShifts", 3);
+			shiftConf.put("maxShifts", 4);
+			shiftConf.put("numConsultations", 0);
+			shiftConf.put("doesCycleShifts", true);
+			shiftConf.put("hasShiftsOnlyWhenCycleShifts", false);
+			shiftConfs.put(id, shiftConf);
+		}
+		YearMonth current = YearMonth.now();
+		for (int i = numMonths; i >= 1; i--) {
+			YearMonth yearMonth = current.minusMonths(i);
+			schedules.put(yearMonth,
+					new StubSchedule(i == 1 ? PENDING_CONFIRMATION : CONFIRMED, this.generateDays(yearMonth), 0));
+		}
+	}
+
+	/**
+	 * Start answering requests on a free port of the loopback interface
+	 *
+	 * @param threads The number of threads answering requests
+	 */
+	public void start(int threads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("rest-stub-"));
+		server.setExecutor(executor);
+		server.createContext(CONTEXT_PATH, this::handle);
+		server.start();
+		log.info("The REST stub is listening at " + this.getUri());
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return The URI of the root resource, as expected by the api.uri property
+	 */
+	public String getUri() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + CONTEXT_PATH + "/";
+	}
+
+	/**
+	 * @return The number of requests answered
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			this.simulateLatency();
+			String path = exchange.getRequestURI().getPath().substring(CONTEXT_PATH.length());
+			String[] segments = path.isEmpty() || path.equals("/") ? new String[0]
+					: path.replaceAll("^/|/$", "").split("/");
+			this.route(exchange, exchange.getRequestMethod(), segments);
+		} catch (IllegalArgumentException | DateTimeException e) {
+			this.respond(exchange, 400, null);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.respond(exchange, 503, null);
+		} catch (RuntimeException e) {
+			log.error("Unexpected exception in the REST stub: " + e);
+			this.respond(exchange, 500, null);
+		} finally {
+			requests.incrementAndGet();
+			exchange.close();
+		}
+	}
+
+	private void simulateLatency() throws InterruptedException {
+		long wait = latency + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+		if (wait > 0) {
+			TimeUnit.MILLISECONDS.sleep(wait);
+		}
+	}
+
+	private void route(HttpExchange exchange, String method, String[] segments) throws IOException {
+		if (segments.length == 0) {
+			if (method.equals("GET")) {
+				exchange.getResponseHeaders().add("Set-Cookie",
+						"JSESSIONID=" + UUID.randomUUID() + "; Path=" + CONTEXT_PATH + "; HttpOnly");
+				this.respond(exchange, 200, this.root());
+			} else {
+				this.respond(exchange, 405, null);
+			}
+			return;
+		}
+		switch (segments[0]) {
+		case "doctors":
+			this.handleDoctors(exchange, method, segments);
+			break;
+		case "shiftconfs":
+			this.handleShiftConfs(exchange, method, segments);
+			break;
+		case "allowedshifts":
+			this.respond(exchange, 200, this.allowedShifts());
+			break;
+		case "calendars":
+			this.handleCalendars(exchange, method, segments);
+			break;
+		case "schedules":
+			this.handleSchedules(exchange, method, segments);
+			break;
+		default:
+			this.respond(exchange, 404, null);
+		}
+	}
+
+	private Map<String, Object> root() {
+		Map<String, Object> links = new LinkedHashMap<>();
+		links.put("self", this.link(""));
+		links.put(rootRel, this.link(""));
+		links.put(doctorsRel, this.link("doctors"));
+		links.put(doctorRel, this.templatedLink("doctors/{doctorId}"));
+		links.put(newDoctorRel, this.templatedLink("doctors{?startDate}"));
+		links.put(shiftConfsRel, this.link("shiftconfs"));
+		links.put(shiftConfRel, this.templatedLink("shiftconfs/{doctorId}"));
+		links.put(allowedShiftsRel, this.link("allowedshifts"));
+		links.put(calendarsRel, this.link("calendars"));
+		links.put(calendarRel, this.templatedLink("calendars/{yearMonth}"));
+		links.put(schedulesRel, this.link("schedules"));
+		links.put(scheduleRel, this.templatedLink("schedules/{yearMonth}"));
+		Map<String, Object> root = new LinkedHashMap<>();
+		root.put("_links", links);
+		return root;
+	}
+
+	private void handleDoctors(HttpExchange exchange, String method, String[] segments) throws IOException {
+		if (segments.length == 1) {
+			if (method.equals("GET")) {
+				List<Object> embedded = new ArrayList<>();
+				for (long id = 1; id < nextDoctorId.get(); id++) {
+					Map<String, Object> doctor = doctors.get(id);
+					if (doctor != null) {
+						embedded.add(this.doctorResource(doctor));
+					}
+				}
+				this.respond(exchange, 200, this.collection(doctorsRel, embedded, "doctors"));
+			} else if (method.equals("POST")) {
+				Map<String, Object> doctor = this.readBody(exchange);
+				long id = nextDoctorId.getAndIncrement();
+				doctor.put("id", id);
+				doctor.put("status", "AVAILABLE");
+				doctors.put(id, doctor);
+				this.respond(exchange, 200, this.doctorResource(doctor));
+			} else {
+				this.respond(exchange, 405, null);
+			}
+			return;
+		}
+		long id = Long.parseLong(segments[1]);
+		Map<String, Object> doctor = doctors.get(id);
+		if (doctor == null) {
+			this.respond(exchange, 404, null);
+		} else if (method.equals("GET")) {
+			this.respond(exchange, 200, this.doctorResource(doctor));
+		} else if (method.equals("PUT")) {
+			Map<String, Object> newDoctor = this.readBody(exchange);
+			newDoctor.put("id", id);
+			doctors.put(id, newDoctor);
+			this.respond(exchange, 200, this.doctorResource(newDoctor));
+		} else {
+			this.respond(exchange, 405, null);
+		}
+	}
+
+	private Map<String, Object> doctorResource(Map<String, Object> doctor) {
+		String self = "doctors/" + doctor.get("id");
+		Map<String, Object> links = new LinkedHashMap<>();
+		links.put("self", this.link(self));
+		links.put(doctorsRel, this.link("doctors"));
+		links.put(updateDoctorRel, this.link(self));
+		links.put(shiftConfRel, this.link("shiftconfs/" + doctor.get("id")));
+		Map<String, Object> resource = new LinkedHashMap<>(doctor);
+		resource.put("_links", links);
+		return resource;
+	}
+
+	private void handleShiftConfs(HttpExchange exchange, String method, String[] segments) throws IOException {
+		if (segments.length == 1) {
+			if (method.equals("POST")) {
+				Map<String, Object> shiftConf = this.readBody(exchange);
+				long doctorId = ((Number) shiftConf.get("doctorId")).longValue();
+				shiftConfs.put(doctorId, shiftConf);
+				this.respond(exchange, 200, this.shiftConfResource(shiftConf));
+			} else {
+				this.respond(exchange, 405, null);
+			}
+			return;
+		}
+		long doctorId = Long.parseLong(segments[1]);
+		Map<String, Object> shiftConf = shiftConfs.get(doctorId);
+		if (shiftConf == null) {
+			this.respond(exchange, 404, null);
+		} else if (method.equals("GET")) {
+			this.respond(exchange, 200, this.shiftConfResource(shiftConf));
+		} else if (method.equals("PUT")) {
+			Map<String, Object> newShiftConf = this.readBody(exchange);
+			shiftConfs.put(doctorId, newShiftConf);
+			this.respond(exchange, 200, this.shiftConfResource(newShiftConf));
+		} else {
+			this.respond(exchange, 405, null);
+		}
+	}
+
+	private Map<String, Object> shiftConfResource(Map<String, Object> shiftConf) {
+		Map<String, Object> links = new LinkedHashMap<>();
+		links.put("self", this.link("shiftconfs/" + shiftConf.get("doctorId")));
+		links.put(shiftConfsRel, this.link("shiftconfs"));
+		Map<String, Object> resource = new LinkedHashMap<>(shiftConf);
+		resource.put("_links", links);
+		return resource;
+	}
+
+	private Map<String, Object> allowedShifts() {
+		List<Object> embedded = new ArrayList<>();
+		for (int i = 0; i < ALLOWED_SHIFTS.size(); i++) {
+			Map<String, Object> allowedShift = new LinkedHashMap<>();
+			allowedShift.put("id", i + 1);
+			allowedShift.put("shift", ALLOWED_SHIFTS.get(i));
+			embedded.add(allowedShift);
+		}
+		return this.collection(allowedShiftsRel, embedded, "allowedshifts");
+	}
+
+	private void handleCalendars(HttpExchange exchange, String method, String[] segments) throws IOException {
+		if (segments.length == 1) {
+			if (method.equals("POST")) {
+				Map<String, Object> calendar = this.readBody(exchange);
+				YearMonth yearMonth = YearMonth.of(((Number) calendar.get("year")).intValue(),
+						((Number) calendar.get("month")).intValue());
+				if (calendars.putIfAbsent(yearMonth, calendar) != null) {
+					this.respond(exchange, 400, null);
+				} else {
+					this.respond(exchange, 200, calendar);
+				}
+			} else {
+				this.respond(exchange, 405, null);
+			}
+			return;
+		}
+		YearMonth yearMonth = YearMonth.parse(segments[1]);
+		if (method.equals("GET")) {
+			Map<String, Object> calendar = calendars.get(yearMonth);
+			this.respond(exchange, calendar == null ? 404 : 200, calendar);
+		} else if (method.equals("PUT")) {
+			Map<String, Object> calendar = this.readBody(exchange);
+			calendars.put(yearMonth, calendar);
+			this.respond(exchange, 200, calendar);
+		} else {
+			this.respond(exchange, 405, null);
+		}
+	}
+
+	private void handleSchedules(HttpExchange exchange, String method, String[] segments) throws IOException {
+		if (segments.length == 1) {
+			if (method.equals("GET")) {
+				List<Object> embedded = new ArrayList<>();
+				for (YearMonth yearMonth : new ArrayList<>(schedules.keySet())) {
+					StubSchedule schedule = this.getSchedule(yearMonth);
+					if (schedule != null) {
+						embedded.add(this.scheduleResource(yearMonth, schedule, false));
+					}
+				}
+				this.respond(exchange, 200, this.collection(schedulesRel, embedded, "schedules"));
+			} else {
+				this.respond(exchange, 405, null);
+			}
+			return;
+		}
+		YearMonth yearMonth = YearMonth.parse(segments[1]);
+		String subresource = segments.length > 2 ? segments[2] : "";
+		StubSchedule schedule = this.getSchedule(yearMonth);
+		switch (subresource) {
+		case "":
+			if (method.equals("GET")) {
+				this.respond(exchange, schedule == null ? 404 : 200,
+						schedule == null ? null : this.scheduleResource(yearMonth, schedule, true));
+			} else if (method.equals("POST")) {
+				if (!calendars.containsKey(yearMonth)) {
+					this.respond(exchange, 404, null);
+				} else if (schedule != null) {
+					this.respond(exchange, 400, null);
+				} else {
+					StubSchedule generating = new StubSchedule(BEING_GENERATED, null,
+							System.currentTimeMillis() + generationTime);
+					schedules.put(yearMonth, generating);
+					this.respond(exchange, 202, this.scheduleResource(yearMonth, generating, true));
+				}
+			} else if (method.equals("PUT")) {
+				if (schedule == null) {
+					this.respond(exchange, 404, null);
+				} else {
+					Map<String, Object> body = this.readBody(exchange);
+					@SuppressWarnings("unchecked")
+					List<Object> days = (List<Object>) body.get("days");
+					StubSchedule updated = new StubSchedule(schedule.status, days, 0);
+					schedules.put(yearMonth, updated);
+					this.respond(exchange, 200, this.scheduleResource(yearMonth, updated, true));
+				}
+			} else if (method.equals("DELETE")) {
+				if (schedule == null) {
+					this.respond(exchange, 404, null);
+				} else if (CONFIRMED.equals(schedule.status)) {
+					this.respond(exchange, 403, null);
+				} else {
+					schedules.remove(yearMonth);
+					this.respond(exchange, 200, null);
+				}
+			} else {
+				this.respond(exchange, 405, null);
+			}
+			break;
+		case "status":
+			if (schedule == null) {
+				this.respond(exchange, 404, null);
+			} else {
+				Map<String, Object> status = new LinkedHashMap<>();
+				status.put("status", schedule.status);
+				this.respond(exchange, 200, status);
+			}
+			break;
+		case "confirm":
+			if (schedule == null) {
+				this.respond(exchange, 404, null);
+			} else if (!PENDING_CONFIRMATION.equals(schedule.status)) {
+				this.respond(exchange, 403, null);
+			} else {
+				schedules.put(yearMonth, new StubSchedule(CONFIRMED, schedule.days, 0));
+				this.respond(exchange, 200, null);
+			}
+			break;
+		default:
+			this.respond(exchange, 404, null);
+		}
+	}
+
+	/**
+	 * @return The schedule of the month, or null. If its generation has finished,
+	 *         its days are generated
+	 */
+	private StubSchedule getSchedule(YearMonth yearMonth) {
+		StubSchedule schedule = schedules.get(yearMonth);
+		if (schedule != null && BEING_GENERATED.equals(schedule.status)
+				&& System.currentTimeMillis() >= schedule.generatedAt) {
+			StubSchedule generated = new StubSchedule(PENDING_CONFIRMATION, this.generateDays(yearMonth), 0);
+			if (schedules.replace(yearMonth, schedule, generated)) {
+				schedule = generated;
+			} else {
+				schedule = schedules.get(yearMonth);
+			}
+		}
+		return schedule;
+	}
+
+	private Map<String, Object> scheduleResource(YearMonth yearMonth, StubSchedule schedule, boolean withDays) {
+		String self = "schedules/" + yearMonth;
+		Map<String, Object> links = new LinkedHashMap<>();
+		links.put("self", this.link(self));
+		links.put(calendarRel, this.link("calendars/" + yearMonth));
+		links.put(scheduleStatusRel, this.link(self + "/status"));
+		if (PENDING_CONFIRMATION.equals(schedule.status)) {
+			links.put(confirmScheduleRel, this.link(self + "/confirm"));
+		}
+		Map<String, Object> resource = new LinkedHashMap<>();
+		resource.put("month", yearMonth.getMonthValue());
+		resource.put("year", yearMonth.getYear());
+		resource.put("status", schedule.status);
+		if (withDays && schedule.days != null) {
+			resource.put("days", schedule.days);
+		}
+		resource.put("_links", links);
+		return resource;
+	}
+
+	/**
+	 * Assign the shifts of a month to the initial doctors, in turns. Every day has
+	 * two cycle shifts, working days also have two shifts and the consultations of
+	 * a tenth of the doctors
+	 */
+	private List<Object> generateDays(YearMonth yearMonth) {
+		List<Object> days = new ArrayList<>();
+		int consultationsPerDay = Math.max(1, numDoctors / 10);
+		int turn = yearMonth.getMonthValue();
+		for (int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+			DayOfWeek dayOfWeek = yearMonth.atDay(day).getDayOfWeek();
+			boolean isWorkingDay = dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY;
+			Map<String, Object> scheduleDay = new LinkedHashMap<>();
+			scheduleDay.put("day", day);
+			scheduleDay.put("isWorkingDay", isWorkingDay);
+			scheduleDay.put("cycle", this.doctorsInTurn(turn, 2));
+			turn += 2;
+			scheduleDay.put("shifts", this.doctorsInTurn(turn, isWorkingDay ? 2 : 0));
+			turn += 2;
+			scheduleDay.put("consultations", this.doctorsInTurn(turn, isWorkingDay ? consultationsPerDay : 0));
+			turn += consultationsPerDay;
+			days.add(scheduleDay);
+		}
+		return days;
+	}
+
+	private List<Object> doctorsInTurn(int turn, int count) {
+		List<Object> assigned = new ArrayList<>();
+		for (int i = 0; i < Math.min(count, numDoctors); i++) {
+			assigned.add(doctors.get((long) ((turn + i) % numDoctors + 1)));
+		}
+		return assigned;
+	}
+
+	private Map<String, Object> collection(String rel, List<Object> embedded, String path) {
+		Map<String, Object> resource = new LinkedHashMap<>();
+		Map<String, Object> embeddedResources = new LinkedHashMap<>();
+		embeddedResources.put(rel, embedded);
+		resource.put("_embedded", embeddedResources);
+		Map<String, Object> links = new LinkedHashMap<>();
+		links.put("self", this.link(path));
+		resource.put("_links", links);
+		return resource;
+	}
+
+	private Map<String, Object> link(String path) {
+		Map<String, Object> link = new LinkedHashMap<>();
+		link.put("href", this.getUri() + path);
+		return link;
+	}
+
+	private Map<String, Object> templatedLink(String path) {
+		Map<String, Object> link = this.link(path);
+		link.put("templated", true);
+		return link;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			byte[] content = StreamUtils.copyToByteArray(body);
+			if (content.length == 0) {
+				return new LinkedHashMap<>();
+			}
+			return objectMapper.readValue(content, LinkedHashMap.class);
+		}
+	}
+
+	private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+		if (body == null) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		byte[] content = objectMapper.writeValueAsBytes(body);
+		if (status == 200 && exchange.getRequestMethod().equals("GET")) {
+			// Successful reads can be revalidated with their ETag
+			String eTag = "\"" + DigestUtils.md5DigestAsHex(content) + "\"";
+			exchange.getResponseHeaders().set("ETag", eTag);
+			if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+		}
+		exchange.getResponseHeaders().set("Content-Type", HAL_JSON);
+		exchange.sendResponseHeaders(status, content.length);
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			responseBody.write(content);
+		}
+	}
+}
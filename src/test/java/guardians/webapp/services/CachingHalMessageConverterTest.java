@@ -0,0 +1,94 @@
+package guardians.webapp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+
+import guardians.webapp.model.Doctor;
+import guardians.webapp.services.ConditionalGetCache.StoredResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CachingHalMessageConverterTest {
+	private static final String KEY = "http://localhost/api/doctors/1|application/hal+json";
+
+	private SimpleMeterRegistry meterRegistry;
+	private ConditionalGetCache cache;
+	private CachingHalMessageConverter converter;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		meterRegistry = new SimpleMeterRegistry();
+		cache = ConditionalGetCacheTest.newCache(meterRegistry, 1024, "", 0);
+		converter = new CachingHalMessageConverter(new MappingJackson2HttpMessageConverter(), cache);
+	}
+
+	@Test
+	void keptResponsesAreParsedOnceAndReadToNewObjects() throws IOException {
+		StoredResponse stored = this.keep("{\"id\":1,\"firstName\":\"Miguel\"}");
+
+		Doctor first = (Doctor) converter.read(Doctor.class, null, this.message(stored.getBody(), stored.getId()));
+		Doctor second = (Doctor) converter.read(Doctor.class, null, this.message(stored.getBody(), stored.getId()));
+
+		assertEquals("Miguel", first.getFirstName());
+		assertEquals("Miguel", second.getFirstName());
+		assertNotSame(first, second, "The callers must not share the objects they receive");
+		assertNotNull(cache.getTree(stored.getId()));
+		assertEquals(1, meterRegistry.get("guardians.rest.cache.parses-skipped").counter().count());
+	}
+
+	@Test
+	void treesOfOtherVersionsAreNotUsed() throws IOException {
+		StoredResponse firstVersion = this.keep("{\"id\":1,\"firstName\":\"Miguel\"}");
+		converter.read(Doctor.class, null, this.message(firstVersion.getBody(), firstVersion.getId()));
+		StoredResponse secondVersion = this.keep("{\"id\":1,\"firstName\":\"Manuel\"}");
+
+		// A response still identified as the first version is decoded from its own
+		// body
+		byte[] body = "{\"id\":1,\"firstName\":\"Mario\"}".getBytes(StandardCharsets.UTF_8);
+		Doctor doctor = (Doctor) converter.read(Doctor.class, null, this.message(body, firstVersion.getId()));
+
+		assertEquals("Mario", doctor.getFirstName());
+		assertNull(cache.getTree(secondVersion.getId()));
+		doctor = (Doctor) converter.read(Doctor.class, null,
+				this.message(secondVersion.getBody(), secondVersion.getId()));
+		assertEquals("Manuel", doctor.getFirstName());
+	}
+
+	@Test
+	void responsesNotKeptAreDecodedFromTheirBody() throws IOException {
+		MockHttpInputMessage message = new MockHttpInputMessage(
+				"{\"id\":2,\"firstName\":\"Ana\"}".getBytes(StandardCharsets.UTF_8));
+
+		Doctor doctor = (Doctor) converter.read(Doctor.class, null, message);
+
+		assertEquals("Ana", doctor.getFirstName());
+		assertEquals(0, meterRegistry.get("guardians.rest.cache.parses-skipped").counter().count());
+	}
+
+	private StoredResponse keep(String body) {
+		StoredResponse stored = new StoredResponse("\"" + body.hashCode() + "\"", null, "application/json",
+				body.getBytes(StandardCharsets.UTF_8));
+		cache.put(KEY, stored);
+		return stored;
+	}
+
+	/**
+	 * @return A response as returned by the {@link ConditionalGetInterceptor}
+	 */
+	private MockHttpInputMessage message(byte[] body, String id) {
+		MockHttpInputMessage message = new MockHttpInputMessage(body);
+		message.getHeaders().set("Content-Type", "application/json");
+		message.getHeaders().set(ConditionalGetInterceptor.KEY_HEADER, KEY);
+		message.getHeaders().set(ConditionalGetInterceptor.ID_HEADER, id);
+		return message;
+	}
+}
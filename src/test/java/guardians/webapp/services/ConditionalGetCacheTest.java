@@ -0,0 +1,192 @@
+package guardians.webapp.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import guardians.webapp.services.ConditionalGetCache.StoredResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ConditionalGetCacheTest {
+	private static final String KEY = "http://localhost/api/doctors/1|application/hal+json";
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	@TempDir
+	Path directory;
+
+	private ConditionalGetCache cache;
+
+	/**
+	 * @param diskDir The directory the evicted responses are written to. If empty,
+	 *                they are discarded
+	 * @return An initialized cache, as it is created by Spring
+	 */
+	static ConditionalGetCache newCache(MeterRegistry meterRegistry, long maxBytes, String diskDir,
+			long diskMaxBytes) throws IOException {
+		ConditionalGetCache cache = new ConditionalGetCache();
+		ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(cache, "maxBytes", maxBytes);
+		ReflectionTestUtils.setField(cache, "diskDir", diskDir);
+		ReflectionTestUtils.setField(cache, "diskMaxBytes", diskMaxBytes);
+		ReflectionTestUtils.setField(cache, "treeMaxBytes", 1024L * 1024);
+		cache.init();
+		return cache;
+	}
+
+	/**
+	 * Wait for the removal listeners of the caches, which are run asynchronously
+	 */
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "The condition was not met in time");
+			Thread.sleep(10);
+		}
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (cache != null) {
+			cache.shutdown();
+		}
+	}
+
+	@Test
+	void keyIncludesTheUriAndTheAcceptedMediaTypes() {
+		MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET,
+				URI.create("http://localhost/api/doctors/1"));
+		request.getHeaders().add("Accept", "application/hal+json");
+		request.getHeaders().add("Accept", "application/json");
+
+		assertEquals("http://localhost/api/doctors/1|application/hal+json,application/json",
+				new ConditionalGetCache().keyOf(request));
+	}
+
+	@Test
+	void getInMemoryOnlyReturnsTheRequestedVersion() throws IOException {
+		cache = newCache(new SimpleMeterRegistry(), 1024, "", 0);
+		StoredResponse firstVersion = response("\"v1\"", "{\"id\":1}");
+		cache.put(KEY, firstVersion);
+		StoredResponse secondVersion = response("\"v2\"", "{\"id\":2}");
+		cache.put(KEY, secondVersion);
+
+		assertNotEquals(firstVersion.getId(), secondVersion.getId());
+		assertNull(cache.getInMemory(KEY, firstVersion.getId()));
+		assertSame(secondVersion, cache.getInMemory(KEY, secondVersion.getId()));
+	}
+
+	@Test
+	void invalidateRemovesTheResponsesOfTheUriForAnyMediaType() throws IOException {
+		cache = newCache(new SimpleMeterRegistry(), 1024, "", 0);
+		cache.put("http://localhost/api/doctors/1|application/hal+json", response("\"v1\"", "{}"));
+		cache.put("http://localhost/api/doctors/1|application/json", response("\"v1\"", "{}"));
+		cache.put("http://localhost/api/doctors/10|application/hal+json", response("\"v1\"", "{}"));
+
+		cache.invalidate(URI.create("http://localhost/api/doctors/1"));
+
+		assertNull(cache.get("http://localhost/api/doctors/1|application/hal+json"));
+		assertNull(cache.get("http://localhost/api/doctors/1|application/json"));
+		assertNotNull(cache.get("http://localhost/api/doctors/10|application/hal+json"));
+	}
+
+	@Test
+	void responsesEvictedFromMemoryAreReadBackFromDisk() throws Exception {
+		// The body does not fit in memory, so it is written to disk as soon as it is
+		// kept
+		cache = newCache(new SimpleMeterRegistry(), 4, directory.toString(), 1024);
+		StoredResponse stored = new StoredResponse("\"v1\"", "Wed, 01 Jul 2020 10:00:00 GMT",
+				"application/hal+json", "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+		cache.put(KEY, stored);
+		await(() -> this.isOnDisk(KEY));
+
+		StoredResponse read = cache.get(KEY);
+
+		assertNotNull(read);
+		assertEquals(stored.getETag(), read.getETag());
+		assertEquals(stored.getLastModified(), read.getLastModified());
+		assertEquals(stored.getContentType(), read.getContentType());
+		assertArrayEquals(stored.getBody(), read.getBody());
+		assertNotEquals(stored.getId(), read.getId(), "A response read from disk is a new version");
+	}
+
+	@Test
+	void entryFilesAreDeletedOnInvalidationAndShutdown() throws Exception {
+		cache = newCache(new SimpleMeterRegistry(), 4, directory.toString(), 1024);
+		cache.put(KEY, response("\"v1\"", "{\"id\":1}"));
+		cache.put("http://localhost/api/doctors/2|application/hal+json", response("\"v1\"", "{\"id\":2}"));
+		await(() -> this.isOnDisk(KEY) && this.isOnDisk("http://localhost/api/doctors/2|application/hal+json"));
+		assertEquals(2, this.countEntryFiles());
+
+		cache.invalidate(URI.create("http://localhost/api/doctors/1"));
+		await(() -> this.countEntryFiles() == 1);
+		assertNull(cache.get(KEY));
+
+		cache.shutdown();
+		await(() -> this.countEntryFiles() == 0);
+	}
+
+	@Test
+	void treesAreDiscardedWithTheirResponse() throws Exception {
+		cache = newCache(new SimpleMeterRegistry(), 1024, "", 0);
+		StoredResponse stored = response("\"v1\"", "{\"id\":1}");
+		cache.put(KEY, stored);
+		cache.putTree(stored.getId(), new ObjectMapper().readTree(stored.getBody()));
+		assertNotNull(cache.getTree(stored.getId()));
+
+		cache.invalidate(URI.create("http://localhost/api/doctors/1"));
+
+		await(() -> cache.getTree(stored.getId()) == null);
+	}
+
+	@Test
+	void treeSizeGrowsWithItsContent() throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		long small = ConditionalGetCache.estimateSize(objectMapper.readTree("{\"days\":[{\"day\":1}]}"));
+		long large = ConditionalGetCache.estimateSize(
+				objectMapper.readTree("{\"days\":[{\"day\":1},{\"day\":2},{\"day\":3,\"text\":\"abcdef\"}]}"));
+
+		assertTrue(small > 0);
+		assertTrue(large > small);
+	}
+
+	private static StoredResponse response(String eTag, String body) {
+		return new StoredResponse(eTag, null, "application/hal+json", body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private boolean isOnDisk(String key) {
+		@SuppressWarnings("unchecked")
+		Cache<String, Long> disk = (Cache<String, Long>) ReflectionTestUtils.getField(cache, "disk");
+		return disk.getIfPresent(key) != null;
+	}
+
+	private long countEntryFiles() {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".entry")).count();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
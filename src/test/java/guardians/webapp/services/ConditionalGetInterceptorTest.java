@@ -0,0 +1,178 @@
+package guardians.webapp.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ConditionalGetInterceptorTest {
+	private static final URI DOCTOR_URI = URI.create("http://localhost/api/doctors/1");
+	private static final String BODY = "{\"id\":1,\"firstName\":\"Miguel\"}";
+
+	private SimpleMeterRegistry meterRegistry;
+	private ConditionalGetCache cache;
+	private ConditionalGetInterceptor interceptor;
+	/**
+	 * The requests that reached the REST service
+	 */
+	private List<HttpRequest> sentRequests;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		meterRegistry = new SimpleMeterRegistry();
+		cache = ConditionalGetCacheTest.newCache(meterRegistry, 1024, "", 0);
+		interceptor = new ConditionalGetInterceptor(cache);
+		sentRequests = new ArrayList<>();
+	}
+
+	@Test
+	void notModifiedResponsesAreReplayedFromTheKeptResponse() throws IOException {
+		this.send(HttpMethod.GET, this.respond(HttpStatus.OK, BODY, "\"v1\""));
+
+		MockClientHttpResponse notModified = this.respond(HttpStatus.NOT_MODIFIED, "", "\"v1\"");
+		notModified.getHeaders().add(HttpHeaders.SET_COOKIE, "SESSION=renewed");
+		ClientHttpResponse response = this.send(HttpMethod.GET, notModified);
+
+		assertEquals("\"v1\"", sentRequests.get(1).getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH));
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals(BODY, bodyOf(response));
+		assertEquals("application/hal+json", response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
+		assertEquals("SESSION=renewed", response.getHeaders().getFirst(HttpHeaders.SET_COOKIE),
+				"The headers received with the 304 have to be kept");
+		assertEquals(1, meterRegistry.get("guardians.rest.cache.misses").counter().count());
+		assertEquals(1, meterRegistry.get("guardians.rest.cache.revalidations").counter().count());
+		assertEquals(1, meterRegistry.get("guardians.rest.cache.hits").counter().count());
+	}
+
+	@Test
+	void lastModifiedIsUsedAsValidator() throws IOException {
+		MockClientHttpResponse ok = this.respond(HttpStatus.OK, BODY, null);
+		ok.getHeaders().set(HttpHeaders.LAST_MODIFIED, "Wed, 01 Jul 2020 10:00:00 GMT");
+		this.send(HttpMethod.GET, ok);
+
+		this.send(HttpMethod.GET, this.respond(HttpStatus.NOT_MODIFIED, "", null));
+
+		HttpHeaders revalidationHeaders = sentRequests.get(1).getHeaders();
+		assertEquals("Wed, 01 Jul 2020 10:00:00 GMT", revalidationHeaders.getFirst(HttpHeaders.IF_MODIFIED_SINCE));
+		assertNull(revalidationHeaders.getFirst(HttpHeaders.IF_NONE_MATCH));
+	}
+
+	@Test
+	void modifiedResponsesReplaceTheKeptOne() throws IOException {
+		this.send(HttpMethod.GET, this.respond(HttpStatus.OK, BODY, "\"v1\""));
+		String newBody = "{\"id\":1,\"firstName\":\"Manuel\"}";
+		ClientHttpResponse response = this.send(HttpMethod.GET, this.respond(HttpStatus.OK, newBody, "\"v2\""));
+
+		assertEquals(newBody, bodyOf(response));
+		this.send(HttpMethod.GET, this.respond(HttpStatus.NOT_MODIFIED, "", "\"v2\""));
+		assertEquals("\"v2\"", sentRequests.get(2).getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH));
+	}
+
+	@Test
+	void noStoreResponsesArePassedThrough() throws IOException {
+		MockClientHttpResponse noStore = this.respond(HttpStatus.OK, BODY, "\"v1\"");
+		noStore.getHeaders().setCacheControl("private, no-store");
+
+		assertSame(noStore, this.send(HttpMethod.GET, noStore));
+		assertNull(cache.get(cache.keyOf(this.request(HttpMethod.GET))));
+	}
+
+	@Test
+	void responsesWithoutValidatorsArePassedThrough() throws IOException {
+		MockClientHttpResponse withoutValidators = this.respond(HttpStatus.OK, BODY, null);
+
+		assertSame(withoutValidators, this.send(HttpMethod.GET, withoutValidators));
+		this.send(HttpMethod.GET, this.respond(HttpStatus.OK, BODY, null));
+		assertFalse(sentRequests.get(1).getHeaders().containsKey(HttpHeaders.IF_NONE_MATCH));
+		assertFalse(sentRequests.get(1).getHeaders().containsKey(HttpHeaders.IF_MODIFIED_SINCE));
+	}
+
+	@Test
+	void unsuccessfulResponsesArePassedThrough() throws IOException {
+		MockClientHttpResponse notFound = this.respond(HttpStatus.NOT_FOUND, "", "\"v1\"");
+
+		assertSame(notFound, this.send(HttpMethod.GET, notFound));
+		assertNull(cache.get(cache.keyOf(this.request(HttpMethod.GET))));
+	}
+
+	@Test
+	void otherMethodsInvalidateTheKeptResponses() throws IOException {
+		this.send(HttpMethod.GET, this.respond(HttpStatus.OK, BODY, "\"v1\""));
+		assertNotNull(cache.get(cache.keyOf(this.request(HttpMethod.GET))));
+
+		this.send(HttpMethod.PUT, this.respond(HttpStatus.OK, BODY, "\"v2\""));
+
+		assertNull(cache.get(cache.keyOf(this.request(HttpMethod.GET))));
+		this.send(HttpMethod.GET, this.respond(HttpStatus.OK, BODY, "\"v2\""));
+		assertFalse(sentRequests.get(2).getHeaders().containsKey(HttpHeaders.IF_NONE_MATCH));
+	}
+
+	@Test
+	void keptResponsesIdentifyTheirVersion() throws IOException {
+		ClientHttpResponse first = this.send(HttpMethod.GET, this.respond(HttpStatus.OK, BODY, "\"v1\""));
+		ClientHttpResponse replayed = this.send(HttpMethod.GET, this.respond(HttpStatus.NOT_MODIFIED, "", "\"v1\""));
+		ClientHttpResponse modified = this.send(HttpMethod.GET, this.respond(HttpStatus.OK, BODY, "\"v2\""));
+
+		String key = cache.keyOf(this.request(HttpMethod.GET));
+		assertEquals(key, first.getHeaders().getFirst(ConditionalGetInterceptor.KEY_HEADER));
+		String firstId = first.getHeaders().getFirst(ConditionalGetInterceptor.ID_HEADER);
+		assertEquals(firstId, replayed.getHeaders().getFirst(ConditionalGetInterceptor.ID_HEADER));
+		String modifiedId = modified.getHeaders().getFirst(ConditionalGetInterceptor.ID_HEADER);
+		assertFalse(firstId.equals(modifiedId));
+		assertNull(cache.getInMemory(key, firstId));
+	}
+
+	private MockClientHttpRequest request(HttpMethod method) {
+		MockClientHttpRequest request = new MockClientHttpRequest(method, DOCTOR_URI);
+		request.getHeaders().set(HttpHeaders.ACCEPT, "application/hal+json");
+		return request;
+	}
+
+	private MockClientHttpResponse respond(HttpStatus status, String body, String eTag) {
+		MockClientHttpResponse response = new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), status);
+		if (!body.isEmpty()) {
+			response.getHeaders().set(HttpHeaders.CONTENT_TYPE, "application/hal+json");
+		}
+		if (eTag != null) {
+			response.getHeaders().set(HttpHeaders.ETAG, eTag);
+		}
+		return response;
+	}
+
+	/**
+	 * Send a request through the interceptor, as if the REST service answered
+	 * with the given response
+	 */
+	private ClientHttpResponse send(HttpMethod method, ClientHttpResponse upstreamResponse) throws IOException {
+		ClientHttpRequestExecution execution = (request, body) -> {
+			sentRequests.add(request);
+			return upstreamResponse;
+		};
+		return interceptor.intercept(this.request(method), new byte[0], execution);
+	}
+
+	private static String bodyOf(ClientHttpResponse response) throws IOException {
+		return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+	}
+}